@@ -0,0 +1,8 @@
+package com.javacreed.examples.gson.aggregate;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface CountConsumer {
+  void accept(int key, long count) throws IOException;
+}
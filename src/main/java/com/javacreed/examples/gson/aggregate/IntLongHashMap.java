@@ -0,0 +1,112 @@
+package com.javacreed.examples.gson.aggregate;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * Sums positive counts by int key without boxing. Open addressing with linear probing is used and a value of zero
+ * marks an empty slot, thus every int is a valid key. Each slot takes 12 bytes and the table is kept at most half
+ * full.
+ */
+class IntLongHashMap {
+
+  private static int hash(final int key) {
+    final int h = key * 0x9e3779b9;
+    return h ^ h >>> 16;
+  }
+
+  private int[] keys;
+  private int mask;
+  private int size;
+  private long[] values;
+
+  IntLongHashMap(final int capacity) {
+    if (Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("The capacity must be a power of two");
+    }
+    keys = new int[capacity];
+    values = new long[capacity];
+    mask = capacity - 1;
+  }
+
+  void add(final int key, final long delta) {
+    if (delta <= 0) {
+      throw new IllegalArgumentException("Only positive counts can be added");
+    }
+
+    int i = IntLongHashMap.hash(key) & mask;
+    while (values[i] != 0) {
+      if (keys[i] == key) {
+        values[i] += delta;
+        return;
+      }
+      i = i + 1 & mask;
+    }
+
+    keys[i] = key;
+    values[i] = delta;
+    if (++size > keys.length >>> 1) {
+      resize(keys.length * 2);
+    }
+  }
+
+  int capacity() {
+    return keys.length;
+  }
+
+  void clear() {
+    Arrays.fill(values, 0);
+    size = 0;
+  }
+
+  /* Visits the entries in ascending key order */
+  void forEachSorted(final CountConsumer consumer) throws IOException {
+    /* The key goes in the upper half so that sorting the longs sorts the (signed) keys */
+    final long[] entries = new long[size];
+    for (int i = 0, j = 0; i < keys.length; i++) {
+      if (values[i] != 0) {
+        entries[j++] = (long) keys[i] << 32 | i;
+      }
+    }
+    Arrays.sort(entries);
+
+    for (final long entry : entries) {
+      final int slot = (int) entry;
+      consumer.accept(keys[slot], values[slot]);
+    }
+  }
+
+  long get(final int key) {
+    int i = IntLongHashMap.hash(key) & mask;
+    while (values[i] != 0) {
+      if (keys[i] == key) {
+        return values[i];
+      }
+      i = i + 1 & mask;
+    }
+    return 0;
+  }
+
+  private void resize(final int capacity) {
+    final int[] oldKeys = keys;
+    final long[] oldValues = values;
+    keys = new int[capacity];
+    values = new long[capacity];
+    mask = capacity - 1;
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != 0) {
+        int j = IntLongHashMap.hash(oldKeys[i]) & mask;
+        while (values[j] != 0) {
+          j = j + 1 & mask;
+        }
+        keys[j] = oldKeys[i];
+        values[j] = oldValues[i];
+      }
+    }
+  }
+
+  int size() {
+    return size;
+  }
+}
@@ -0,0 +1,228 @@
+package com.javacreed.examples.gson.aggregate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/*
+ * Counts occurrences by int key within a memory budget. Once the in-memory table reaches the number of keys the budget
+ * allows, its entries are written to a temporary file as a run sorted by key and the table is cleared. The runs are
+ * merged when the counts are read, so that keys are visited in ascending order whether spilled or not. The merge reads
+ * at most fanIn runs at once, each through a buffer sized from the budget, and merges the oldest runs into new ones
+ * first when there are more.
+ */
+public class SpillingCounter implements Closeable {
+
+  private static class Run implements Comparable<Run> {
+    private long count;
+    private final DataInputStream in;
+    private int key;
+
+    private Run(final Path file, final int bufferSize) throws IOException {
+      in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), bufferSize));
+    }
+
+    @Override
+    public int compareTo(final Run other) {
+      return Integer.compare(key, other.key);
+    }
+
+    private boolean next() throws IOException {
+      key = in.readInt();
+      count = in.readLong();
+      if (count == 0) {
+        in.close();
+        return false;
+      }
+      return true;
+    }
+  }
+
+  /* 12 bytes per slot, plus the old table of half the size while resizing */
+  private static final int BYTES_PER_SLOT = 18;
+  private static final int TABLE_BYTES_PER_SLOT = 12;
+  private static final int MINIMUM_CAPACITY = 16;
+
+  private static final int MINIMUM_BUFFER_SIZE = 512;
+  private static final int MAXIMUM_BUFFER_SIZE = 64 * 1024;
+  private static final int MAXIMUM_FAN_IN = 64;
+
+  /* Runs hold the entries in ascending key order followed by an entry with a count of zero, as counts are positive */
+  private static void endRun(final DataOutputStream out) throws IOException {
+    out.writeInt(0);
+    out.writeLong(0);
+  }
+
+  private final int bufferSize;
+  private final IntLongHashMap counts;
+  private final int fanIn;
+  private final int maximumCapacity;
+  private long increments;
+  private final List<Path> runs = new ArrayList<>();
+  private long spilledBytes;
+  private final Path tempDirectory;
+
+  public SpillingCounter(final long memoryBudget) {
+    this(memoryBudget, null);
+  }
+
+  /* Runs are written to the default temporary-file directory when tempDirectory is null */
+  public SpillingCounter(final long memoryBudget, final Path tempDirectory) {
+    final long slots = Math.min(memoryBudget / SpillingCounter.BYTES_PER_SLOT, 1 << 30);
+    this.maximumCapacity = (int) Math.max(Long.highestOneBit(slots), SpillingCounter.MINIMUM_CAPACITY);
+    this.counts = new IntLongHashMap(Math.min(maximumCapacity, 1024));
+    this.tempDirectory = tempDirectory;
+
+    /*
+     * The table never grows beyond its maximum capacity, thus the part of the budget kept for resizing is what the run
+     * buffers may take: one per run merged plus one for the run written by an intermediate pass
+     */
+    final long buffers = Math.max(memoryBudget - (long) maximumCapacity * SpillingCounter.TABLE_BYTES_PER_SLOT, 0);
+    this.fanIn = (int) Math.max(Math.min(buffers / SpillingCounter.MINIMUM_BUFFER_SIZE - 1,
+        SpillingCounter.MAXIMUM_FAN_IN), 2);
+    this.bufferSize = (int) Math.max(Math.min(buffers / (fanIn + 1), SpillingCounter.MAXIMUM_BUFFER_SIZE),
+        SpillingCounter.MINIMUM_BUFFER_SIZE);
+  }
+
+  public void add(final int key, final long count) throws IOException {
+    counts.add(key, count);
+    increments++;
+
+    /* Spill before the table needs to grow beyond the budget */
+    if (counts.capacity() == maximumCapacity && counts.size() == maximumCapacity >>> 1) {
+      spill();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (final Path run : runs) {
+      Files.deleteIfExists(run);
+    }
+    runs.clear();
+  }
+
+  public void forEach(final CountConsumer consumer) throws IOException {
+    if (runs.isEmpty()) {
+      counts.forEachSorted(consumer);
+      return;
+    }
+
+    if (counts.size() > 0) {
+      spill();
+    }
+
+    /* Each pass merges the oldest runs into a new one until the rest can be merged at once */
+    while (runs.size() > fanIn) {
+      final Path run = createRun();
+      final List<Path> merged = runs.subList(0, fanIn);
+      try (DataOutputStream out = openRun(run)) {
+        merge(merged, (key, count) -> {
+          out.writeInt(key);
+          out.writeLong(count);
+        });
+        SpillingCounter.endRun(out);
+        spilledBytes += out.size();
+      }
+
+      for (final Path file : merged) {
+        Files.delete(file);
+      }
+      merged.clear();
+    }
+
+    merge(runs, consumer);
+  }
+
+  private Path createRun() throws IOException {
+    final Path run = tempDirectory == null ? Files.createTempFile("counts", ".run")
+        : Files.createTempFile(tempDirectory, "counts", ".run");
+    runs.add(run);
+    return run;
+  }
+
+  public int getFanIn() {
+    return fanIn;
+  }
+
+  public long getIncrements() {
+    return increments;
+  }
+
+  public int getRuns() {
+    return runs.size();
+  }
+
+  public long getSpilledBytes() {
+    return spilledBytes;
+  }
+
+  public void increment(final int key) throws IOException {
+    add(key, 1);
+  }
+
+  private void merge(final List<Path> files, final CountConsumer consumer) throws IOException {
+    /* Runs that fail are no longer in the queue, thus all the runs opened are closed, some of them again */
+    final List<Run> opened = new ArrayList<>(files.size());
+    final PriorityQueue<Run> queue = new PriorityQueue<>(files.size());
+    try {
+      for (final Path file : files) {
+        final Run run = new Run(file, bufferSize);
+        opened.add(run);
+        if (run.next()) {
+          queue.add(run);
+        }
+      }
+
+      while (!queue.isEmpty()) {
+        final int key = queue.peek().key;
+        long count = 0;
+        while (!queue.isEmpty() && queue.peek().key == key) {
+          final Run run = queue.poll();
+          count += run.count;
+          if (run.next()) {
+            queue.add(run);
+          }
+        }
+        consumer.accept(key, count);
+      }
+    } catch (final EOFException e) {
+      throw new IOException("Truncated spill file", e);
+    } finally {
+      for (final Run run : opened) {
+        run.in.close();
+      }
+    }
+  }
+
+  private DataOutputStream openRun(final Path run) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), bufferSize));
+  }
+
+  private void spill() throws IOException {
+    try (DataOutputStream out = openRun(createRun())) {
+      counts.forEachSorted((key, count) -> {
+        out.writeInt(key);
+        out.writeLong(count);
+      });
+      SpillingCounter.endRun(out);
+      spilledBytes += out.size();
+    }
+    counts.clear();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d increments, %d runs (%,d bytes) spilled, merged %d at a time", increments, runs.size(),
+        spilledBytes, fanIn);
+  }
+}
@@ -0,0 +1,65 @@
+package com.javacreed.examples.gson.part3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.javacreed.examples.gson.aggregate.SpillingCounter;
+import com.javacreed.examples.gson.stream.Utf8JsonReader;
+
+public class BooksPerAuthorReport {
+
+  /* Streams a JSON array of books one at a time and counts the books by each author */
+  public static long count(final JsonReader in, final SpillingCounter counter) throws IOException {
+    final TypeAdapter<Book> adapter = new BookTypeAdapter();
+
+    long books = 0;
+    in.beginArray();
+    while (in.hasNext()) {
+      for (final Author author : adapter.read(in).getAuthors()) {
+        counter.increment(author.getId());
+      }
+      books++;
+    }
+    in.endArray();
+    return books;
+  }
+
+  public static void main(final String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: BooksPerAuthorReport <books.json> [memory budget in MB]");
+      System.exit(1);
+    }
+    final long memoryBudget = (args.length > 1 ? Long.parseLong(args[1]) : 64) * 1024 * 1024;
+
+    for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      pool.resetPeakUsage();
+    }
+
+    final long start = System.nanoTime();
+    try (InputStream source = Files.newInputStream(Paths.get(args[0]));
+        JsonReader in = new Utf8JsonReader(source, 64 * 1024);
+        SpillingCounter counter = new SpillingCounter(memoryBudget)) {
+      final long books = BooksPerAuthorReport.count(in, counter);
+      counter.forEach((id, count) -> System.out.printf("%d\t%d%n", id, count));
+      final long elapsed = System.nanoTime() - start;
+
+      long peakHeap = 0;
+      for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          peakHeap += pool.getPeakUsage().getUsed();
+        }
+      }
+
+      System.err.printf("Read %d books in %,d ms (%.0f books/s), %s%n", books, elapsed / 1_000_000,
+          books * 1_000_000_000D / elapsed, counter);
+      System.err.printf("Peak heap usage %,d KB%n", peakHeap / 1024);
+    }
+  }
+}
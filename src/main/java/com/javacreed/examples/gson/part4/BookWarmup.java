@@ -0,0 +1,33 @@
+package com.javacreed.examples.gson.part4;
+
+import java.io.IOException;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.javacreed.examples.gson.warmup.GsonWarmup;
+
+public class BookWarmup {
+
+  public static Book createBook(final int i) {
+    final Book book = new Book();
+    book.setAuthors(new Author[] { new Author(i, "Joshua Bloch"), new Author(i + 1, "Neal Gafter") });
+    book.setTitle("Java Puzzlers: Traps, Pitfalls, and Corner Cases " + i);
+    book.setIsbn("978-" + (1000000000 + i));
+    return book;
+  }
+
+  /* Also the training run used to create the AppCDS archive, see the appcds profile in the pom */
+  public static void main(final String[] args) throws IOException {
+    final GsonBuilder gsonBuilder = new GsonBuilder();
+    gsonBuilder.registerTypeAdapter(Book.class, new BookTypeAdapter());
+    final Gson gson = gsonBuilder.create();
+
+    final long start = System.nanoTime();
+    BookWarmup.warmUp(gson, GsonWarmup.iterations());
+    System.out.printf("Warmed up in %,d ms%n", (System.nanoTime() - start) / 1_000_000);
+  }
+
+  public static void warmUp(final Gson gson, final int iterations) throws IOException {
+    GsonWarmup.warmUp(gson, Book.class, BookWarmup::createBook, iterations);
+  }
+}
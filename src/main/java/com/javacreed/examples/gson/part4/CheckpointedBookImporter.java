@@ -0,0 +1,88 @@
+package com.javacreed.examples.gson.part4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Consumer;
+
+import com.google.gson.TypeAdapter;
+import com.javacreed.examples.gson.stream.Utf8JsonReader;
+
+public class CheckpointedBookImporter {
+
+  private final TypeAdapter<Book> adapter = new BookTypeAdapter();
+  private final Path checkpointFile;
+  private final int checkpointInterval;
+
+  public CheckpointedBookImporter(final Path checkpointFile, final int checkpointInterval) {
+    if (checkpointInterval < 1) {
+      throw new IllegalArgumentException("The checkpoint interval must be at least 1");
+    }
+
+    this.checkpointFile = checkpointFile;
+    this.checkpointInterval = checkpointInterval;
+  }
+
+  /*
+   * Books read after the last checkpoint are passed to the consumer again when an interrupted import is restarted, thus
+   * the consumer needs to tolerate up to checkpointInterval duplicates.
+   */
+  public ImportCheckpoint importBooks(final Path source, final Consumer<Book> consumer) throws IOException {
+    final BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+    ImportCheckpoint checkpoint = ImportCheckpoint.load(checkpointFile);
+    if (checkpoint == null) {
+      checkpoint = ImportCheckpoint.start(attributes);
+    } else {
+      checkpoint.checkSource(source, attributes);
+      CheckpointedBookImporter.verify(source, checkpoint);
+    }
+
+    try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+      channel.position(checkpoint.getOffset());
+
+      final RecordScanner scanner = new RecordScanner(Channels.newInputStream(channel), checkpoint.getOffset());
+      long records = checkpoint.getRecords();
+      while (scanner.next()) {
+        consumer.accept(adapter.read(new Utf8JsonReader(ByteBuffer.wrap(scanner.buffer(), 0, scanner.length()))));
+
+        if (++records % checkpointInterval == 0) {
+          CheckpointedBookImporter.next(checkpoint, scanner, records).save(checkpointFile);
+        }
+      }
+
+      Files.deleteIfExists(checkpointFile);
+      return records == checkpoint.getRecords() ? checkpoint
+          : CheckpointedBookImporter.next(checkpoint, scanner, records);
+    }
+  }
+
+  /* Records the checksum of the record just read, which is compared with the source when resuming */
+  private static ImportCheckpoint next(final ImportCheckpoint checkpoint, final RecordScanner scanner,
+      final long records) {
+    return checkpoint.next(scanner.offset(), records, scanner.length(),
+        ImportCheckpoint.update(ImportCheckpoint.INITIAL_CHECKSUM, scanner.buffer(), 0, scanner.length()));
+  }
+
+  /*
+   * Compares the record that ends at the checkpoint with the one it was taken after. Together with the size and
+   * modification time of the source this catches a checkpoint that does not belong to the source, without reading
+   * everything before it again.
+   */
+  private static void verify(final Path source, final ImportCheckpoint checkpoint) throws IOException {
+    final ByteBuffer record = ByteBuffer.allocate(checkpoint.getRecordLength());
+    try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+      final long start = checkpoint.getOffset() - record.capacity();
+      while (record.hasRemaining() && channel.read(record, start + record.position()) != -1) {}
+    }
+
+    if (record.hasRemaining() || ImportCheckpoint.update(ImportCheckpoint.INITIAL_CHECKSUM, record.array(), 0,
+        record.capacity()) != checkpoint.getRecordChecksum()) {
+      throw new IOException("Checkpoint " + checkpoint + " does not match the records in " + source);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package com.javacreed.examples.gson.part4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Properties;
+
+public class ImportCheckpoint {
+
+  public static final long INITIAL_CHECKSUM = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /* Returns null when there is no checkpoint file */
+  public static ImportCheckpoint load(final Path file) throws IOException {
+    if (Files.notExists(file)) {
+      return null;
+    }
+
+    final Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(file)) {
+      properties.load(in);
+    }
+
+    final ImportCheckpoint checkpoint;
+    try {
+      checkpoint = new ImportCheckpoint(Long.parseLong(properties.getProperty("offset")),
+          Long.parseLong(properties.getProperty("records")), Integer.parseInt(properties.getProperty("record.length")),
+          Long.parseUnsignedLong(properties.getProperty("record.checksum"), 16),
+          Long.parseLong(properties.getProperty("source.size")),
+          Long.parseLong(properties.getProperty("source.modified")));
+    } catch (final NumberFormatException | NullPointerException e) {
+      throw new IOException("Invalid checkpoint file " + file, e);
+    }
+
+    if (checkpoint.recordLength < 0 || checkpoint.recordLength > checkpoint.offset) {
+      throw new IOException("Invalid checkpoint file " + file);
+    }
+    return checkpoint;
+  }
+
+  public static ImportCheckpoint start(final BasicFileAttributes source) {
+    return new ImportCheckpoint(0, 0, 0, ImportCheckpoint.INITIAL_CHECKSUM, source.size(),
+        source.lastModifiedTime().toMillis());
+  }
+
+  /* 64-bit FNV-1a */
+  public static long update(long checksum, final byte[] bytes, final int offset, final int length) {
+    for (int i = offset, end = offset + length; i < end; i++) {
+      checksum ^= bytes[i] & 0xff;
+      checksum *= ImportCheckpoint.FNV_PRIME;
+    }
+    return checksum;
+  }
+
+  private final long offset;
+  /* The checksum and length of the record that ends at the offset, which is verified when resuming */
+  private final long recordChecksum;
+  private final int recordLength;
+  private final long records;
+  private final long sourceModified;
+  private final long sourceSize;
+
+  public ImportCheckpoint(final long offset, final long records, final int recordLength, final long recordChecksum,
+      final long sourceSize, final long sourceModified) {
+    this.offset = offset;
+    this.records = records;
+    this.recordLength = recordLength;
+    this.recordChecksum = recordChecksum;
+    this.sourceSize = sourceSize;
+    this.sourceModified = sourceModified;
+  }
+
+  /* Fails when the source was replaced or modified since this checkpoint was taken */
+  public void checkSource(final Path source, final BasicFileAttributes attributes) throws IOException {
+    final long modified = attributes.lastModifiedTime().toMillis();
+    if (attributes.size() != sourceSize || modified != sourceModified) {
+      throw new IOException(String.format(
+          "The checkpoint was taken for a source of %d bytes modified at %d, but %s has %d bytes and was modified at %d",
+          sourceSize, sourceModified, source, attributes.size(), modified));
+    }
+  }
+
+  @Override
+  public boolean equals(final Object object) {
+    if (object instanceof ImportCheckpoint) {
+      final ImportCheckpoint other = (ImportCheckpoint) object;
+      return offset == other.offset && records == other.records && recordLength == other.recordLength
+          && recordChecksum == other.recordChecksum && sourceSize == other.sourceSize
+          && sourceModified == other.sourceModified;
+    }
+
+    return false;
+  }
+
+  public long getOffset() {
+    return offset;
+  }
+
+  public long getRecordChecksum() {
+    return recordChecksum;
+  }
+
+  public int getRecordLength() {
+    return recordLength;
+  }
+
+  public long getRecords() {
+    return records;
+  }
+
+  public long getSourceModified() {
+    return sourceModified;
+  }
+
+  public long getSourceSize() {
+    return sourceSize;
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + Long.hashCode(offset);
+    result = prime * result + Long.hashCode(records);
+    result = prime * result + recordLength;
+    result = prime * result + Long.hashCode(recordChecksum);
+    result = prime * result + Long.hashCode(sourceSize);
+    result = prime * result + Long.hashCode(sourceModified);
+    return result;
+  }
+
+  public ImportCheckpoint next(final long offset, final long records, final int recordLength,
+      final long recordChecksum) {
+    return new ImportCheckpoint(offset, records, recordLength, recordChecksum, sourceSize, sourceModified);
+  }
+
+  public void save(final Path file) throws IOException {
+    final Properties properties = new Properties();
+    properties.setProperty("offset", Long.toString(offset));
+    properties.setProperty("records", Long.toString(records));
+    properties.setProperty("record.length", Integer.toString(recordLength));
+    properties.setProperty("record.checksum", Long.toHexString(recordChecksum));
+    properties.setProperty("source.size", Long.toString(sourceSize));
+    properties.setProperty("source.modified", Long.toString(sourceModified));
+
+    /*
+     * Write next to the target, force it to disk and only then rename, so that neither a crash nor a power failure
+     * leaves a half written checkpoint
+     */
+    final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      final OutputStream out = Channels.newOutputStream(channel);
+      properties.store(out, null);
+      out.flush();
+      channel.force(true);
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d records up to byte %d (last record checksum %016x)", records, offset, recordChecksum);
+  }
+}
@@ -0,0 +1,39 @@
+package com.javacreed.examples.gson.part4;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
+import com.google.gson.TypeAdapter;
+import com.javacreed.examples.gson.stream.Utf8JsonReader;
+
+public class ParallelBookReader {
+
+  private final TypeAdapter<Book> adapter = new BookTypeAdapter();
+
+  public Book read(final ByteBuffer buffer, final StructuralIndex index, final int element) throws IOException {
+    final ByteBuffer slice = buffer.duplicate();
+    /* Through Buffer, as the covariant ByteBuffer overrides added in Java 9 do not exist on Java 8 */
+    ((Buffer) slice).limit(index.end(element)).position(index.start(element));
+    return adapter.read(new Utf8JsonReader(slice));
+  }
+
+  public Book[] readAll(final ByteBuffer buffer) throws IOException {
+    final StructuralIndex index = StructuralIndexer.index(buffer);
+    final Book[] books = new Book[index.size()];
+    try {
+      IntStream.range(0, books.length).parallel().forEach(i -> {
+        try {
+          books[i] = read(buffer, index, i);
+        } catch (final IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (final UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return books;
+  }
+}
@@ -0,0 +1,183 @@
+package com.javacreed.examples.gson.part4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.google.gson.stream.MalformedJsonException;
+
+class RecordScanner {
+
+  private static final int BEFORE_ARRAY = 0;
+  private static final int FIRST_ELEMENT = 1;
+  private static final int NEXT_ELEMENT = 2;
+  private static final int AFTER_ELEMENT = 3;
+  private static final int CLOSED = 4;
+
+  private static final int INPUT_SIZE = 64 * 1024;
+
+  private byte[] buffer = new byte[1024];
+  private final InputStream in;
+  /* Read from the stream in bulk, so that the stream needs no buffering */
+  private final byte[] input = new byte[RecordScanner.INPUT_SIZE];
+  private int length;
+  private int limit;
+  private long offset;
+  private int position;
+  private int state;
+
+  /* A non-zero offset must point just after a record previously returned by this scanner */
+  RecordScanner(final InputStream in, final long offset) {
+    this.in = in;
+    this.offset = offset;
+    this.state = offset == 0 ? RecordScanner.BEFORE_ARRAY : RecordScanner.AFTER_ELEMENT;
+  }
+
+  private void append(final byte[] bytes, final int from, final int count) {
+    if (length + count > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + count));
+    }
+    System.arraycopy(bytes, from, buffer, length, count);
+    length += count;
+  }
+
+  byte[] buffer() {
+    return buffer;
+  }
+
+  int length() {
+    return length;
+  }
+
+  /* The buffer and length keep the last record once this returns false */
+  boolean next() throws IOException {
+    while (true) {
+      switch (state) {
+      case BEFORE_ARRAY:
+        expect(nextNonWhitespace(), '[');
+        state = RecordScanner.FIRST_ELEMENT;
+        break;
+      case AFTER_ELEMENT:
+        final int separator = nextNonWhitespace();
+        if (separator == ']') {
+          close();
+        } else {
+          expect(separator, ',');
+          state = RecordScanner.NEXT_ELEMENT;
+        }
+        break;
+      case FIRST_ELEMENT:
+      case NEXT_ELEMENT:
+        final int first = nextNonWhitespace();
+        if (first == ']' && state == RecordScanner.FIRST_ELEMENT) {
+          close();
+          break;
+        }
+        readElement(first);
+        state = RecordScanner.AFTER_ELEMENT;
+        return true;
+      default:
+        return false;
+      }
+    }
+  }
+
+  /* Nothing but whitespace may follow the array, as anything else would be records that are silently dropped */
+  private void close() throws IOException {
+    while (position < limit || fill()) {
+      final byte b = input[position];
+      if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+        throw new MalformedJsonException("Unexpected content after the top-level array at byte " + offset);
+      }
+      position++;
+      offset++;
+    }
+    state = RecordScanner.CLOSED;
+  }
+
+  private void expect(final int actual, final char expected) throws MalformedJsonException {
+    if (actual != expected) {
+      throw new MalformedJsonException("Expected '" + expected + "' at byte " + (offset - 1));
+    }
+  }
+
+  private int nextNonWhitespace() throws IOException {
+    while (true) {
+      final int b = read();
+      if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+        return b;
+      }
+    }
+  }
+
+  private boolean fill() throws IOException {
+    int count;
+    do {
+      count = in.read(input, 0, input.length);
+    } while (count == 0);
+
+    if (count == -1) {
+      return false;
+    }
+    position = 0;
+    limit = count;
+    return true;
+  }
+
+  long offset() {
+    return offset;
+  }
+
+  private int read() throws IOException {
+    if (position == limit && !fill()) {
+      throw new MalformedJsonException("Unexpected end of input at byte " + offset);
+    }
+    offset++;
+    return input[position++] & 0xff;
+  }
+
+  /* Copies the element whose first byte was just read, scanning what is left of the input a block at a time */
+  private void readElement(final int first) throws IOException {
+    if (first != '{' && first != '[') {
+      throw new MalformedJsonException("Expected an object or array at byte " + (offset - 1));
+    }
+    length = 0;
+    append(input, position - 1, 1);
+
+    int depth = 1;
+    boolean inString = false;
+    boolean escaped = false;
+    while (true) {
+      if (position == limit && !fill()) {
+        throw new MalformedJsonException("Unexpected end of input at byte " + offset);
+      }
+
+      int i = position;
+      while (i < limit) {
+        final byte b = input[i++];
+        if (inString) {
+          if (escaped) {
+            escaped = false;
+          } else if (b == '\\') {
+            escaped = true;
+          } else if (b == '"') {
+            inString = false;
+          }
+        } else if (b == '"') {
+          inString = true;
+        } else if (b == '{' || b == '[') {
+          depth++;
+        } else if ((b == '}' || b == ']') && --depth == 0) {
+          break;
+        }
+      }
+
+      append(input, position, i - position);
+      offset += i - position;
+      position = i;
+      if (depth == 0) {
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.javacreed.examples.gson.part4;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.javacreed.examples.gson.warmup.GsonWarmup;
+
+/*
+ * Launches a new JVM for every run, as a batch job would be, and measures the wall-clock time from launching it until
+ * it has serialised its first book and until it has processed a batch of books. Runs that warm up the adapters first
+ * are only included when the number of iterations is set with -Dgson.warmup.iterations. Runs with an AppCDS archive
+ * need the archive created by the appcds profile and the same class path used to create it, such as:
+ *
+ * java -cp target/gson-typeadapter-example-1.0.0.jar:~/.m2/repository/com/google/code/gson/gson/2.8.5/gson-2.8.5.jar
+ * com.javacreed.examples.gson.part4.StartupBenchmark 5 target/gson-typeadapter-example.jsa
+ */
+public class StartupBenchmark {
+
+  private static final int BOOKS = 10_000;
+
+  private static void child(final boolean warmup) throws IOException {
+    final GsonBuilder gsonBuilder = new GsonBuilder();
+    gsonBuilder.registerTypeAdapter(Book.class, new BookTypeAdapter());
+    final Gson gson = gsonBuilder.create();
+
+    if (warmup) {
+      BookWarmup.warmUp(gson, GsonWarmup.iterations());
+    }
+
+    System.out.println(gson.toJson(BookWarmup.createBook(0), Book.class).length());
+    System.out.flush();
+
+    int length = 0;
+    for (int i = 1; i < StartupBenchmark.BOOKS; i++) {
+      final String json = gson.toJson(BookWarmup.createBook(i), Book.class);
+      length += gson.fromJson(json, Book.class).getTitle().length();
+    }
+    System.out.println(length);
+  }
+
+  public static void main(final String[] args) throws IOException, InterruptedException {
+    if (args.length > 0 && args[0].equals("--child")) {
+      StartupBenchmark.child(args.length > 1 && args[1].equals("--warmup"));
+      return;
+    }
+
+    final int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+    final boolean warmup = System.getProperty(GsonWarmup.ITERATIONS_PROPERTY) != null;
+    StartupBenchmark.measure("Cold", runs, Collections.emptyList(), false);
+    if (warmup) {
+      StartupBenchmark.measure("Warmup", runs, Collections.emptyList(), true);
+    }
+
+    if (args.length > 1) {
+      final Path archive = Paths.get(args[1]);
+      if (Files.notExists(archive)) {
+        System.out.printf("No AppCDS archive at %s, create one with: mvn -Pappcds package%n", archive);
+        return;
+      }
+
+      final List<String> options = Arrays.asList("-XX:SharedArchiveFile=" + archive, "-Xshare:on");
+      StartupBenchmark.measure("AppCDS", runs, options, false);
+      if (warmup) {
+        StartupBenchmark.measure("AppCDS+warmup", runs, options, true);
+      }
+    }
+  }
+
+  private static void measure(final String label, final int runs, final List<String> options, final boolean warmup)
+      throws IOException, InterruptedException {
+    final List<String> command = new ArrayList<>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    command.addAll(options);
+    if (warmup) {
+      command.add("-D" + GsonWarmup.ITERATIONS_PROPERTY + "=" + GsonWarmup.iterations());
+    }
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(StartupBenchmark.class.getName());
+    command.add("--child");
+    if (warmup) {
+      command.add("--warmup");
+    }
+
+    final long[] firstBook = new long[runs];
+    final long[] batch = new long[runs];
+    for (int run = 0; run < runs; run++) {
+      final long start = System.nanoTime();
+      final Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      try (BufferedReader in = new BufferedReader(
+          new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+        if (in.readLine() == null) {
+          throw new IOException("No output from " + String.join(" ", command));
+        }
+        firstBook[run] = System.nanoTime() - start;
+        in.readLine();
+        batch[run] = System.nanoTime() - start;
+      }
+
+      if (process.waitFor() != 0) {
+        throw new IOException("Exit code " + process.exitValue() + " from " + String.join(" ", command));
+      }
+    }
+
+    Arrays.sort(firstBook);
+    Arrays.sort(batch);
+    System.out.printf("%-14s first book %,6d ms, %d books %,6d ms (median of %d runs)%n", label,
+        firstBook[runs / 2] / 1_000_000, StartupBenchmark.BOOKS, batch[runs / 2] / 1_000_000, runs);
+  }
+}
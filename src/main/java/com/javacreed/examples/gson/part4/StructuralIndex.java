@@ -0,0 +1,40 @@
+package com.javacreed.examples.gson.part4;
+
+public class StructuralIndex {
+
+  private final int[] ends;
+  private final int size;
+  private final int[] starts;
+
+  StructuralIndex(final int[] starts, final int[] ends, final int size) {
+    this.starts = starts;
+    this.ends = ends;
+    this.size = size;
+  }
+
+  /* Exclusive offset of the element's closing bracket */
+  public int end(final int element) {
+    checkElement(element);
+    return ends[element];
+  }
+
+  private void checkElement(final int element) {
+    if (element < 0 || element >= size) {
+      throw new IndexOutOfBoundsException("Element " + element + " of " + size);
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int start(final int element) {
+    checkElement(element);
+    return starts[element];
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d top-level elements", size);
+  }
+}
@@ -0,0 +1,197 @@
+package com.javacreed.examples.gson.part4;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import com.google.gson.stream.MalformedJsonException;
+
+/*
+ * Locates the objects and arrays directly nested within a top-level JSON array without parsing them. The UTF-8 bytes
+ * are read eight at a time and a SWAR (SIMD within a register) comparison finds any quotes, backslashes, brackets and
+ * commas in the word, so only these bytes are visited individually. Multi-byte UTF-8 sequences never contain ASCII
+ * values and thus need no decoding. The top level is validated so that no record is lost silently: every element must
+ * be an object or an array, elements must be separated by commas and nothing but whitespace may surround the array.
+ * The contents of the elements are left for the parser to validate.
+ */
+public class StructuralIndexer {
+
+  private static final long ONES = 0x0101010101010101L;
+  private static final long LOW_SEVEN_BITS = 0x7f7f7f7f7f7f7f7fL;
+
+  private static final long QUOTES = StructuralIndexer.ONES * '"';
+  private static final long BACKSLASHES = StructuralIndexer.ONES * '\\';
+  private static final long OPEN_BRACES = StructuralIndexer.ONES * '{';
+  private static final long CLOSE_BRACES = StructuralIndexer.ONES * '}';
+  private static final long OPEN_BRACKETS = StructuralIndexer.ONES * '[';
+  private static final long CLOSE_BRACKETS = StructuralIndexer.ONES * ']';
+  private static final long COMMAS = StructuralIndexer.ONES * ',';
+
+  private static final int BEFORE_ARRAY = 0;
+  private static final int FIRST_ELEMENT = 1;
+  private static final int NEXT_ELEMENT = 2;
+  private static final int AFTER_ELEMENT = 3;
+  private static final int IN_ELEMENT = 4;
+  private static final int CLOSED = 5;
+
+  public static StructuralIndex index(final ByteBuffer buffer) throws MalformedJsonException {
+    final ByteBuffer bytes = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    final int limit = bytes.limit();
+    final StructuralIndexer indexer = new StructuralIndexer(bytes);
+
+    int i = bytes.position();
+    for (; i <= limit - 8; i += 8) {
+      final long word = bytes.getLong(i);
+      long mask = StructuralIndexer.matches(word, StructuralIndexer.QUOTES)
+          | StructuralIndexer.matches(word, StructuralIndexer.BACKSLASHES)
+          | StructuralIndexer.matches(word, StructuralIndexer.OPEN_BRACES)
+          | StructuralIndexer.matches(word, StructuralIndexer.CLOSE_BRACES)
+          | StructuralIndexer.matches(word, StructuralIndexer.OPEN_BRACKETS)
+          | StructuralIndexer.matches(word, StructuralIndexer.CLOSE_BRACKETS)
+          | StructuralIndexer.matches(word, StructuralIndexer.COMMAS);
+      while (mask != 0) {
+        final int offset = i + (Long.numberOfTrailingZeros(mask) >>> 3);
+        indexer.visit(offset, bytes.get(offset));
+        mask &= mask - 1;
+      }
+    }
+
+    for (; i < limit; i++) {
+      final byte b = bytes.get(i);
+      if (b == '"' || b == '\\' || b == '{' || b == '}' || b == '[' || b == ']' || b == ',') {
+        indexer.visit(i, b);
+      }
+    }
+
+    return indexer.build(limit);
+  }
+
+  private static boolean isWhitespace(final byte b) {
+    return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+  }
+
+  /* Sets the high bit of every byte in word equal to the byte repeated in pattern, without false positives */
+  private static long matches(final long word, final long pattern) {
+    final long x = word ^ pattern;
+    return ~((x & StructuralIndexer.LOW_SEVEN_BITS) + StructuralIndexer.LOW_SEVEN_BITS | x
+        | StructuralIndexer.LOW_SEVEN_BITS);
+  }
+
+  private final ByteBuffer bytes;
+  private int depth;
+  private int[] ends = new int[256];
+  /* Start of the bytes since the last top-level structural byte, which may only be whitespace */
+  private int gap;
+  private boolean inString;
+  private int size;
+  private int skip = -1;
+  private int start;
+  private int[] starts = new int[256];
+  private int state = StructuralIndexer.BEFORE_ARRAY;
+
+  private StructuralIndexer(final ByteBuffer bytes) {
+    this.bytes = bytes;
+    this.gap = bytes.position();
+  }
+
+  private StructuralIndex build(final int limit) throws MalformedJsonException {
+    if (state != StructuralIndexer.CLOSED) {
+      throw new MalformedJsonException(inString ? "Unterminated string"
+          : state == StructuralIndexer.BEFORE_ARRAY ? "Expected a JSON array" : "Unterminated array");
+    }
+    checkGap(limit, "Unexpected content after the top-level array");
+
+    return new StructuralIndex(starts, ends, size);
+  }
+
+  private void checkGap(final int offset, final String message) throws MalformedJsonException {
+    for (int i = gap; i < offset; i++) {
+      if (!StructuralIndexer.isWhitespace(bytes.get(i))) {
+        throw new MalformedJsonException(message + " at byte " + i);
+      }
+    }
+  }
+
+  private void visit(final int offset, final byte b) throws MalformedJsonException {
+    if (state == StructuralIndexer.IN_ELEMENT) {
+      visitElement(offset, b);
+      return;
+    }
+
+    switch (state) {
+    case BEFORE_ARRAY:
+      checkGap(offset, "Expected a JSON array");
+      if (b != '[') {
+        throw new MalformedJsonException("Expected a JSON array at byte " + offset);
+      }
+      state = StructuralIndexer.FIRST_ELEMENT;
+      break;
+    case FIRST_ELEMENT:
+    case NEXT_ELEMENT:
+      checkGap(offset, "Expected an object or array element");
+      if (b == '{' || b == '[') {
+        start = offset;
+        depth = 1;
+        state = StructuralIndexer.IN_ELEMENT;
+      } else if (b == ']' && state == StructuralIndexer.FIRST_ELEMENT) {
+        state = StructuralIndexer.CLOSED;
+      } else {
+        throw new MalformedJsonException("Expected an object or array element at byte " + offset);
+      }
+      break;
+    case AFTER_ELEMENT:
+      checkGap(offset, "Expected ',' or ']'");
+      if (b == ',') {
+        state = StructuralIndexer.NEXT_ELEMENT;
+      } else if (b == ']') {
+        state = StructuralIndexer.CLOSED;
+      } else {
+        throw new MalformedJsonException("Expected ',' or ']' at byte " + offset);
+      }
+      break;
+    default:
+      throw new MalformedJsonException("Unexpected content after the top-level array at byte " + offset);
+    }
+    gap = offset + 1;
+  }
+
+  /* Only tracks strings and nesting within an element, the parser validates the rest */
+  private void visitElement(final int offset, final byte b) {
+    if (offset == skip) {
+      return;
+    }
+
+    if (inString) {
+      if (b == '\\') {
+        skip = offset + 1;
+      } else if (b == '"') {
+        inString = false;
+      }
+      return;
+    }
+
+    switch (b) {
+    case '"':
+      inString = true;
+      break;
+    case '{':
+    case '[':
+      depth++;
+      break;
+    case '}':
+    case ']':
+      if (--depth == 0) {
+        if (size == starts.length) {
+          starts = Arrays.copyOf(starts, size * 2);
+          ends = Arrays.copyOf(ends, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = offset + 1;
+        size++;
+        state = StructuralIndexer.AFTER_ELEMENT;
+        gap = offset + 1;
+      }
+      break;
+    }
+  }
+}
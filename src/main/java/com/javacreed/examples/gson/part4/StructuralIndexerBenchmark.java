@@ -0,0 +1,47 @@
+package com.javacreed.examples.gson.part4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+public class StructuralIndexerBenchmark {
+  public static void main(final String[] args) throws IOException {
+    final int count = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+    final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+    // Configure GSON
+    final GsonBuilder gsonBuilder = new GsonBuilder();
+    gsonBuilder.registerTypeAdapter(Book.class, new BookTypeAdapter());
+    final Gson gson = gsonBuilder.create();
+
+    final Book[] books = new Book[count];
+    for (int i = 0; i < count; i++) {
+      books[i] = new Book();
+      books[i].setAuthors(new Author[] { new Author(i, "Joshua \"Josh\" Bloch"), new Author(i + 1, "Neal Gafter") });
+      books[i].setTitle("Java Puzzlers: Traps, Pitfalls, and Corner Cases [Volume " + i + "]");
+      books[i].setIsbn("978-0321336781");
+    }
+    final ByteBuffer buffer = ByteBuffer.wrap(gson.toJson(books).getBytes(StandardCharsets.UTF_8));
+    System.out.printf("Indexing %d books (%,d bytes)%n", count, buffer.remaining());
+
+    for (int i = 0; i < iterations; i++) {
+      final long start = System.nanoTime();
+      final StructuralIndex index = StructuralIndexer.index(buffer);
+      final long elapsed = System.nanoTime() - start;
+      System.out.printf("Index  %2d: %s in %,d ms (%.2f GB/s)%n", i, index, elapsed / 1_000_000,
+          (double) buffer.remaining() / elapsed);
+    }
+
+    final ParallelBookReader reader = new ParallelBookReader();
+    for (int i = 0; i < iterations; i++) {
+      final long start = System.nanoTime();
+      final Book[] parsed = reader.readAll(buffer);
+      final long elapsed = System.nanoTime() - start;
+      System.out.printf("Parse  %2d: %d books in %,d ms (%.2f GB/s)%n", i, parsed.length, elapsed / 1_000_000,
+          (double) buffer.remaining() / elapsed);
+    }
+  }
+}
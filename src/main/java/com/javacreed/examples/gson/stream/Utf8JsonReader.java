@@ -0,0 +1,832 @@
+package com.javacreed.examples.gson.stream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+/*
+ * A JsonReader that parses UTF-8 bytes directly instead of the characters of a Reader, so that type adapters such as
+ * the BookTypeAdapter can be used unchanged. Strings made of printable ASCII without escapes are copied straight from
+ * the byte buffer, everything else is decoded by hand. Heap byte buffers are parsed in place while direct and mapped
+ * buffers are copied in chunks of the configured buffer size. Unlike the JsonReader, this reader is always strict.
+ */
+public class Utf8JsonReader extends JsonReader {
+
+  public static final int DEFAULT_BUFFER_SIZE = 8192;
+  private static final int MINIMUM_BUFFER_SIZE = 16;
+
+  /*
+   * Gson's map adapter reads each key as a value by calling JsonReaderInternalAccess.promoteNameToValue(), which changes
+   * the private state of the JsonReader instead of calling an overridable method. The JsonReader this class extends is
+   * thus kept on a name of the endless object {"":0,"":0,... so that a promotion shows up as a STRING from super.peek(),
+   * at which point the name pending in this reader is promoted too and the JsonReader is moved on to the next name.
+   * Each read returns the start of the object or a single name, as the JsonReader stops filling its buffer once it has
+   * enough and a reader is created for every record.
+   */
+  static final class Names extends Reader {
+
+    private static final String CHARS = "{\"\":0,\"";
+    private static final int START = 2;
+
+    private int position;
+
+    @Override
+    public void close() {}
+
+    @Override
+    public int read(final char[] buffer, final int offset, final int length) {
+      final int end = position < Names.START ? Names.START : Names.CHARS.length();
+      final int count = Math.min(length, end - position);
+      Names.CHARS.getChars(position, position + count, buffer, offset);
+      position += count;
+      if (position == Names.CHARS.length()) {
+        position = Names.START;
+      }
+      return count;
+    }
+  }
+
+  private static final int EMPTY_ARRAY = 1;
+  private static final int NONEMPTY_ARRAY = 2;
+  private static final int EMPTY_OBJECT = 3;
+  private static final int DANGLING_NAME = 4;
+  private static final int NONEMPTY_OBJECT = 5;
+  private static final int EMPTY_DOCUMENT = 6;
+  private static final int NONEMPTY_DOCUMENT = 7;
+  private static final int CLOSED = 8;
+
+  private static final int PEEKED_NONE = 0;
+  private static final int PEEKED_BEGIN_OBJECT = 1;
+  private static final int PEEKED_END_OBJECT = 2;
+  private static final int PEEKED_BEGIN_ARRAY = 3;
+  private static final int PEEKED_END_ARRAY = 4;
+  private static final int PEEKED_TRUE = 5;
+  private static final int PEEKED_FALSE = 6;
+  private static final int PEEKED_NULL = 7;
+  private static final int PEEKED_STRING = 8;
+  private static final int PEEKED_NAME = 9;
+  private static final int PEEKED_LONG = 10;
+  private static final int PEEKED_NUMBER = 11;
+  private static final int PEEKED_BUFFERED = 12;
+  private static final int PEEKED_END_DOCUMENT = 13;
+
+  private static boolean isDigit(final int c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isLiteral(final int c) {
+    return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || Utf8JsonReader.isDigit(c) || c == '.' || c == '-'
+        || c == '+' || c == '_';
+  }
+
+  /* Offset of buffer[0] within the input, used for error messages */
+  private long base;
+  private byte[] buffer;
+  private int charCount;
+  private char[] chars = new char[64];
+  private final InputStream in;
+  private int limit;
+  private int[] pathIndices = new int[32];
+  private String[] pathNames = new String[32];
+  private int peeked = Utf8JsonReader.PEEKED_NONE;
+  private long peekedLong;
+  private String peekedString;
+  private int pos;
+  private final ByteBuffer source;
+  private int[] stack = new int[32];
+  private int stackSize;
+
+  public Utf8JsonReader(final ByteBuffer source) {
+    this(source, Utf8JsonReader.DEFAULT_BUFFER_SIZE);
+  }
+
+  public Utf8JsonReader(final ByteBuffer source, final int bufferSize) {
+    super(new Names());
+    this.in = null;
+    if (source.hasArray()) {
+      this.source = null;
+      this.buffer = source.array();
+      this.pos = source.arrayOffset() + source.position();
+      this.limit = source.arrayOffset() + source.limit();
+      this.base = -pos;
+    } else {
+      this.source = source.duplicate();
+      this.buffer = new byte[Utf8JsonReader.checkBufferSize(bufferSize)];
+    }
+    push(Utf8JsonReader.EMPTY_DOCUMENT);
+    startNames();
+  }
+
+  public Utf8JsonReader(final InputStream in) {
+    this(in, Utf8JsonReader.DEFAULT_BUFFER_SIZE);
+  }
+
+  public Utf8JsonReader(final InputStream in, final int bufferSize) {
+    super(new Names());
+    if (in == null) {
+      throw new NullPointerException("in == null");
+    }
+    this.in = in;
+    this.source = null;
+    this.buffer = new byte[Utf8JsonReader.checkBufferSize(bufferSize)];
+    push(Utf8JsonReader.EMPTY_DOCUMENT);
+    startNames();
+  }
+
+  private static int checkBufferSize(final int bufferSize) {
+    if (bufferSize < Utf8JsonReader.MINIMUM_BUFFER_SIZE) {
+      throw new IllegalArgumentException("The buffer size must be at least " + Utf8JsonReader.MINIMUM_BUFFER_SIZE);
+    }
+    return bufferSize;
+  }
+
+  private void append(final char c) {
+    if (charCount == chars.length) {
+      chars = Arrays.copyOf(chars, charCount * 2);
+    }
+    chars[charCount++] = c;
+  }
+
+  @Override
+  public void beginArray() throws IOException {
+    if (peeked() != Utf8JsonReader.PEEKED_BEGIN_ARRAY) {
+      throw unexpected(JsonToken.BEGIN_ARRAY);
+    }
+    push(Utf8JsonReader.EMPTY_ARRAY);
+    pathIndices[stackSize - 1] = 0;
+    peeked = Utf8JsonReader.PEEKED_NONE;
+  }
+
+  @Override
+  public void beginObject() throws IOException {
+    if (peeked() != Utf8JsonReader.PEEKED_BEGIN_OBJECT) {
+      throw unexpected(JsonToken.BEGIN_OBJECT);
+    }
+    push(Utf8JsonReader.EMPTY_OBJECT);
+    peeked = Utf8JsonReader.PEEKED_NONE;
+  }
+
+  @Override
+  public void close() throws IOException {
+    peeked = Utf8JsonReader.PEEKED_NONE;
+    stack[0] = Utf8JsonReader.CLOSED;
+    stackSize = 1;
+    if (in != null) {
+      in.close();
+    }
+  }
+
+  private int doPeek() throws IOException {
+    final int scope = stack[stackSize - 1];
+    int c;
+    switch (scope) {
+    case EMPTY_ARRAY:
+      stack[stackSize - 1] = Utf8JsonReader.NONEMPTY_ARRAY;
+      break;
+    case NONEMPTY_ARRAY:
+      c = nextNonWhitespace(true);
+      if (c == ']') {
+        return peeked = Utf8JsonReader.PEEKED_END_ARRAY;
+      }
+      if (c != ',') {
+        throw syntaxError("Unterminated array");
+      }
+      break;
+    case EMPTY_OBJECT:
+    case NONEMPTY_OBJECT:
+      stack[stackSize - 1] = Utf8JsonReader.DANGLING_NAME;
+      if (scope == Utf8JsonReader.NONEMPTY_OBJECT) {
+        c = nextNonWhitespace(true);
+        if (c == '}') {
+          return peeked = Utf8JsonReader.PEEKED_END_OBJECT;
+        }
+        if (c != ',') {
+          throw syntaxError("Unterminated object");
+        }
+      }
+      c = nextNonWhitespace(true);
+      if (c == '"') {
+        return peeked = Utf8JsonReader.PEEKED_NAME;
+      }
+      if (c == '}' && scope == Utf8JsonReader.EMPTY_OBJECT) {
+        return peeked = Utf8JsonReader.PEEKED_END_OBJECT;
+      }
+      throw syntaxError("Expected name");
+    case DANGLING_NAME:
+      stack[stackSize - 1] = Utf8JsonReader.NONEMPTY_OBJECT;
+      if (nextNonWhitespace(true) != ':') {
+        throw syntaxError("Expected ':'");
+      }
+      break;
+    case EMPTY_DOCUMENT:
+      stack[stackSize - 1] = Utf8JsonReader.NONEMPTY_DOCUMENT;
+      break;
+    case NONEMPTY_DOCUMENT:
+      if (nextNonWhitespace(false) == -1) {
+        return peeked = Utf8JsonReader.PEEKED_END_DOCUMENT;
+      }
+      throw syntaxError("Expected end of document");
+    default:
+      throw new IllegalStateException("JsonReader is closed");
+    }
+
+    c = nextNonWhitespace(true);
+    switch (c) {
+    case ']':
+      if (scope == Utf8JsonReader.EMPTY_ARRAY) {
+        return peeked = Utf8JsonReader.PEEKED_END_ARRAY;
+      }
+      throw syntaxError("Unexpected value");
+    case '[':
+      return peeked = Utf8JsonReader.PEEKED_BEGIN_ARRAY;
+    case '{':
+      return peeked = Utf8JsonReader.PEEKED_BEGIN_OBJECT;
+    case '"':
+      return peeked = Utf8JsonReader.PEEKED_STRING;
+    case 't':
+      expectLiteral("rue");
+      return peeked = Utf8JsonReader.PEEKED_TRUE;
+    case 'f':
+      expectLiteral("alse");
+      return peeked = Utf8JsonReader.PEEKED_FALSE;
+    case 'n':
+      expectLiteral("ull");
+      return peeked = Utf8JsonReader.PEEKED_NULL;
+    default:
+      pos--;
+      return peekNumber();
+    }
+  }
+
+  @Override
+  public void endArray() throws IOException {
+    if (peeked() != Utf8JsonReader.PEEKED_END_ARRAY) {
+      throw unexpected(JsonToken.END_ARRAY);
+    }
+    stackSize--;
+    pathIndices[stackSize - 1]++;
+    peeked = Utf8JsonReader.PEEKED_NONE;
+  }
+
+  @Override
+  public void endObject() throws IOException {
+    if (peeked() != Utf8JsonReader.PEEKED_END_OBJECT) {
+      throw unexpected(JsonToken.END_OBJECT);
+    }
+    stackSize--;
+    pathNames[stackSize] = null;
+    pathIndices[stackSize - 1]++;
+    peeked = Utf8JsonReader.PEEKED_NONE;
+  }
+
+  private void expectLiteral(final String remaining) throws IOException {
+    for (int i = 0; i < remaining.length(); i++) {
+      if (nextByte() != remaining.charAt(i)) {
+        throw syntaxError("Expected literal value");
+      }
+    }
+    if (Utf8JsonReader.isLiteral(peekByte())) {
+      throw syntaxError("Expected literal value");
+    }
+  }
+
+  private boolean fill(final int minimum) throws IOException {
+    if (in == null && source == null) {
+      return false;
+    }
+
+    if (pos > 0) {
+      base += pos;
+      limit -= pos;
+      System.arraycopy(buffer, pos, buffer, 0, limit);
+      pos = 0;
+    }
+
+    while (limit < minimum) {
+      int read;
+      if (in != null) {
+        read = in.read(buffer, limit, buffer.length - limit);
+      } else {
+        read = Math.min(source.remaining(), buffer.length - limit);
+        if (read == 0) {
+          read = -1;
+        } else {
+          source.get(buffer, limit, read);
+        }
+      }
+
+      if (read == -1) {
+        return false;
+      }
+      limit += read;
+    }
+    return true;
+  }
+
+  @Override
+  public String getPath() {
+    final StringBuilder result = new StringBuilder().append('$');
+    for (int i = 0; i < stackSize; i++) {
+      switch (stack[i]) {
+      case EMPTY_ARRAY:
+      case NONEMPTY_ARRAY:
+        result.append('[').append(pathIndices[i]).append(']');
+        break;
+      case EMPTY_OBJECT:
+      case DANGLING_NAME:
+      case NONEMPTY_OBJECT:
+        result.append('.');
+        if (pathNames[i] != null) {
+          result.append(pathNames[i]);
+        }
+        break;
+      }
+    }
+    return result.toString();
+  }
+
+  @Override
+  public boolean hasNext() throws IOException {
+    final int p = peeked();
+    return p != Utf8JsonReader.PEEKED_END_OBJECT && p != Utf8JsonReader.PEEKED_END_ARRAY
+        && p != Utf8JsonReader.PEEKED_END_DOCUMENT;
+  }
+
+  private String locationString() {
+    return " at byte " + (base + pos) + " path " + getPath();
+  }
+
+  @Override
+  public boolean nextBoolean() throws IOException {
+    final int p = peeked();
+    if (p != Utf8JsonReader.PEEKED_TRUE && p != Utf8JsonReader.PEEKED_FALSE) {
+      throw unexpected(JsonToken.BOOLEAN);
+    }
+    peeked = Utf8JsonReader.PEEKED_NONE;
+    pathIndices[stackSize - 1]++;
+    return p == Utf8JsonReader.PEEKED_TRUE;
+  }
+
+  private int nextByte() throws IOException {
+    if (pos == limit && !fill(1)) {
+      throw new EOFException("End of input" + locationString());
+    }
+    return buffer[pos++] & 0xff;
+  }
+
+  @Override
+  public double nextDouble() throws IOException {
+    final int p = peeked();
+    final double result;
+    if (p == Utf8JsonReader.PEEKED_LONG) {
+      result = peekedLong;
+    } else if (p == Utf8JsonReader.PEEKED_NUMBER || p == Utf8JsonReader.PEEKED_STRING
+        || p == Utf8JsonReader.PEEKED_BUFFERED) {
+      bufferString(p);
+      result = Double.parseDouble(peekedString);
+      if (!isLenient() && (Double.isNaN(result) || Double.isInfinite(result))) {
+        throw new MalformedJsonException("JSON forbids NaN and infinities: " + result + locationString());
+      }
+    } else {
+      throw unexpected(JsonToken.NUMBER);
+    }
+
+    consumeValue();
+    return result;
+  }
+
+  @Override
+  public int nextInt() throws IOException {
+    final long result = nextLong(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    return (int) result;
+  }
+
+  @Override
+  public long nextLong() throws IOException {
+    return nextLong(Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  private long nextLong(final long minimum, final long maximum) throws IOException {
+    final int p = peeked();
+    final long result;
+    if (p == Utf8JsonReader.PEEKED_LONG) {
+      result = peekedLong;
+    } else if (p == Utf8JsonReader.PEEKED_NUMBER || p == Utf8JsonReader.PEEKED_STRING
+        || p == Utf8JsonReader.PEEKED_BUFFERED) {
+      bufferString(p);
+      final double value = Double.parseDouble(peekedString);
+      result = (long) value;
+      if (result != value) {
+        throw new NumberFormatException("Expected an integer but was " + peekedString + locationString());
+      }
+    } else {
+      throw unexpected(JsonToken.NUMBER);
+    }
+
+    if (result < minimum || result > maximum) {
+      throw new NumberFormatException("Expected a number between " + minimum + " and " + maximum + " but was "
+          + result + locationString());
+    }
+    consumeValue();
+    return result;
+  }
+
+  /* Keeps a string or number that fails to convert available to nextString(), as the JsonReader does */
+  private void bufferString(final int p) throws IOException {
+    if (p == Utf8JsonReader.PEEKED_STRING) {
+      peekedString = readString();
+    }
+    peeked = Utf8JsonReader.PEEKED_BUFFERED;
+  }
+
+  private void consumeValue() {
+    peeked = Utf8JsonReader.PEEKED_NONE;
+    peekedString = null;
+    pathIndices[stackSize - 1]++;
+  }
+
+  @Override
+  public String nextName() throws IOException {
+    if (peeked() != Utf8JsonReader.PEEKED_NAME) {
+      throw unexpected(JsonToken.NAME);
+    }
+    final String result = readString();
+    pathNames[stackSize - 1] = result;
+    peeked = Utf8JsonReader.PEEKED_NONE;
+    return result;
+  }
+
+  private int nextNonWhitespace(final boolean throwOnEof) throws IOException {
+    while (true) {
+      if (pos == limit && !fill(1)) {
+        if (throwOnEof) {
+          throw new EOFException("End of input" + locationString());
+        }
+        return -1;
+      }
+
+      final int c = buffer[pos++] & 0xff;
+      if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+        return c;
+      }
+    }
+  }
+
+  @Override
+  public void nextNull() throws IOException {
+    if (peeked() != Utf8JsonReader.PEEKED_NULL) {
+      throw unexpected(JsonToken.NULL);
+    }
+    peeked = Utf8JsonReader.PEEKED_NONE;
+    pathIndices[stackSize - 1]++;
+  }
+
+  @Override
+  public String nextString() throws IOException {
+    final int p = peeked();
+    final String result;
+    if (p == Utf8JsonReader.PEEKED_STRING) {
+      result = readString();
+    } else if (p == Utf8JsonReader.PEEKED_LONG) {
+      result = Long.toString(peekedLong);
+    } else if (p == Utf8JsonReader.PEEKED_NUMBER || p == Utf8JsonReader.PEEKED_BUFFERED) {
+      result = peekedString;
+    } else {
+      throw unexpected(JsonToken.STRING);
+    }
+
+    consumeValue();
+    return result;
+  }
+
+  @Override
+  public JsonToken peek() throws IOException {
+    switch (peeked()) {
+    case PEEKED_BEGIN_OBJECT:
+      return JsonToken.BEGIN_OBJECT;
+    case PEEKED_END_OBJECT:
+      return JsonToken.END_OBJECT;
+    case PEEKED_BEGIN_ARRAY:
+      return JsonToken.BEGIN_ARRAY;
+    case PEEKED_END_ARRAY:
+      return JsonToken.END_ARRAY;
+    case PEEKED_TRUE:
+    case PEEKED_FALSE:
+      return JsonToken.BOOLEAN;
+    case PEEKED_NULL:
+      return JsonToken.NULL;
+    case PEEKED_STRING:
+    case PEEKED_BUFFERED:
+      return JsonToken.STRING;
+    case PEEKED_NAME:
+      return JsonToken.NAME;
+    case PEEKED_LONG:
+    case PEEKED_NUMBER:
+      return JsonToken.NUMBER;
+    default:
+      return JsonToken.END_DOCUMENT;
+    }
+  }
+
+  private int peekByte() throws IOException {
+    if (pos == limit && !fill(1)) {
+      return -1;
+    }
+    return buffer[pos] & 0xff;
+  }
+
+  private int peeked() throws IOException {
+    final int p = peeked;
+    if (p == Utf8JsonReader.PEEKED_NAME || p == Utf8JsonReader.PEEKED_NONE && doPeek() == Utf8JsonReader.PEEKED_NAME) {
+      if (super.peek() == JsonToken.STRING) {
+        /* The opening quote was consumed by doPeek() in both cases, thus the name is read as a string value */
+        nextNames();
+        peeked = Utf8JsonReader.PEEKED_STRING;
+      }
+    }
+    return peeked;
+  }
+
+  /* Reads the promoted name, its value and the comma of the Names object, stopping on the next name */
+  private void nextNames() throws IOException {
+    super.nextString();
+    super.skipValue();
+    super.hasNext();
+  }
+
+  private int peekNumber() throws IOException {
+    charCount = 0;
+    boolean negative = false;
+    boolean fitsLong = true;
+    boolean integral = true;
+    /* Accumulated as a negative number as its range is larger */
+    long value = 0;
+
+    int c = peekByte();
+    if (c == '-') {
+      negative = true;
+      append('-');
+      pos++;
+      c = peekByte();
+    }
+    if (!Utf8JsonReader.isDigit(c)) {
+      throw syntaxError("Expected value");
+    }
+
+    final boolean leadingZero = c == '0';
+    int digits = 0;
+    while (Utf8JsonReader.isDigit(c)) {
+      final int digit = c - '0';
+      if (value < Long.MIN_VALUE / 10 || value * 10 < Long.MIN_VALUE + digit) {
+        fitsLong = false;
+      }
+      value = value * 10 - digit;
+      append((char) c);
+      digits++;
+      pos++;
+      c = peekByte();
+    }
+    if (leadingZero && digits > 1) {
+      throw syntaxError("Malformed number");
+    }
+
+    if (c == '.') {
+      integral = false;
+      append('.');
+      pos++;
+      c = readDigits();
+    }
+    if (c == 'e' || c == 'E') {
+      integral = false;
+      append((char) c);
+      pos++;
+      c = peekByte();
+      if (c == '+' || c == '-') {
+        append((char) c);
+        pos++;
+      }
+      c = readDigits();
+    }
+    if (Utf8JsonReader.isLiteral(c)) {
+      throw syntaxError("Malformed number");
+    }
+
+    if (integral && fitsLong && (negative ? value != 0 : value != Long.MIN_VALUE)) {
+      peekedLong = negative ? value : -value;
+      return peeked = Utf8JsonReader.PEEKED_LONG;
+    }
+
+    peekedString = new String(chars, 0, charCount);
+    return peeked = Utf8JsonReader.PEEKED_NUMBER;
+  }
+
+  private int readDigits() throws IOException {
+    int c = peekByte();
+    if (!Utf8JsonReader.isDigit(c)) {
+      throw syntaxError("Malformed number");
+    }
+    while (Utf8JsonReader.isDigit(c)) {
+      append((char) c);
+      pos++;
+      c = peekByte();
+    }
+    return c;
+  }
+
+  private void push(final int scope) {
+    if (stackSize == stack.length) {
+      stack = Arrays.copyOf(stack, stackSize * 2);
+      pathIndices = Arrays.copyOf(pathIndices, stackSize * 2);
+      pathNames = Arrays.copyOf(pathNames, stackSize * 2);
+    }
+    stack[stackSize++] = scope;
+  }
+
+  /* Reads the rest of a string whose opening quote was consumed */
+  private String readString() throws IOException {
+    final byte[] buffer = this.buffer;
+    for (int i = pos, limit = this.limit; i < limit; i++) {
+      final byte b = buffer[i];
+      if (b == '"') {
+        final String result = new String(buffer, pos, i - pos, StandardCharsets.ISO_8859_1);
+        pos = i + 1;
+        return result;
+      }
+
+      /* Escapes, control characters and (negative) non-ASCII bytes need decoding */
+      if (b == '\\' || b < 0x20) {
+        break;
+      }
+    }
+
+    return readStringSlow();
+  }
+
+  private void readEscape() throws IOException {
+    final int c = nextByte();
+    switch (c) {
+    case '"':
+    case '\\':
+    case '/':
+      append((char) c);
+      break;
+    case 'b':
+      append('\b');
+      break;
+    case 'f':
+      append('\f');
+      break;
+    case 'n':
+      append('\n');
+      break;
+    case 'r':
+      append('\r');
+      break;
+    case 't':
+      append('\t');
+      break;
+    case 'u':
+      int result = 0;
+      for (int i = 0; i < 4; i++) {
+        final int h = nextByte();
+        result <<= 4;
+        if (h >= '0' && h <= '9') {
+          result += h - '0';
+        } else if (h >= 'a' && h <= 'f') {
+          result += h - 'a' + 10;
+        } else if (h >= 'A' && h <= 'F') {
+          result += h - 'A' + 10;
+        } else {
+          throw syntaxError("Malformed Unicode escape");
+        }
+      }
+      append((char) result);
+      break;
+    default:
+      throw syntaxError("Invalid escape sequence");
+    }
+  }
+
+  /* Malformed UTF-8 is replaced with U+FFFD, as an InputStreamReader would do */
+  private String readStringSlow() throws IOException {
+    charCount = 0;
+    while (true) {
+      final int b = nextByte();
+      if (b == '"') {
+        return new String(chars, 0, charCount);
+      }
+      if (b == '\\') {
+        readEscape();
+        continue;
+      }
+      if (b < 0x80) {
+        append((char) b);
+        continue;
+      }
+
+      int codePoint;
+      int continuation;
+      int minimum;
+      if ((b & 0xe0) == 0xc0) {
+        codePoint = b & 0x1f;
+        continuation = 1;
+        minimum = 0x80;
+      } else if ((b & 0xf0) == 0xe0) {
+        codePoint = b & 0x0f;
+        continuation = 2;
+        minimum = 0x800;
+      } else if ((b & 0xf8) == 0xf0) {
+        codePoint = b & 0x07;
+        continuation = 3;
+        minimum = 0x10000;
+      } else {
+        append('\ufffd');
+        continue;
+      }
+
+      boolean malformed = false;
+      for (; continuation > 0; continuation--) {
+        final int c = peekByte();
+        if ((c & 0xc0) != 0x80) {
+          malformed = true;
+          break;
+        }
+        codePoint = codePoint << 6 | c & 0x3f;
+        pos++;
+      }
+
+      if (malformed || codePoint < minimum || codePoint > Character.MAX_CODE_POINT
+          || Character.isSurrogate((char) codePoint) && codePoint < 0x10000) {
+        append('\ufffd');
+      } else if (codePoint < 0x10000) {
+        append((char) codePoint);
+      } else {
+        append(Character.highSurrogate(codePoint));
+        append(Character.lowSurrogate(codePoint));
+      }
+    }
+  }
+
+  @Override
+  public void skipValue() throws IOException {
+    int count = 0;
+    do {
+      switch (peeked()) {
+      case PEEKED_BEGIN_ARRAY:
+        push(Utf8JsonReader.EMPTY_ARRAY);
+        count++;
+        break;
+      case PEEKED_BEGIN_OBJECT:
+        push(Utf8JsonReader.EMPTY_OBJECT);
+        count++;
+        break;
+      case PEEKED_END_ARRAY:
+      case PEEKED_END_OBJECT:
+        stackSize--;
+        count--;
+        break;
+      case PEEKED_NAME:
+      case PEEKED_STRING:
+        readString();
+        break;
+      case PEEKED_END_DOCUMENT:
+        return;
+      }
+      peeked = Utf8JsonReader.PEEKED_NONE;
+      peekedString = null;
+    } while (count != 0);
+
+    pathIndices[stackSize - 1]++;
+    pathNames[stackSize - 1] = "null";
+  }
+
+  private void startNames() {
+    try {
+      super.beginObject();
+      super.hasNext();
+    } catch (final IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private MalformedJsonException syntaxError(final String message) {
+    return new MalformedJsonException(message + locationString());
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + locationString();
+  }
+
+  private IllegalStateException unexpected(final JsonToken expected) throws IOException {
+    return new IllegalStateException("Expected " + expected + " but was " + peek() + locationString());
+  }
+}
@@ -0,0 +1,417 @@
+package com.javacreed.examples.gson.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+
+import com.google.gson.stream.JsonWriter;
+
+/*
+ * A JsonWriter that encodes UTF-8 bytes directly into a buffer of the configured size instead of writing characters
+ * to a Writer. ASCII characters that need no escaping are copied byte by byte, which covers most book data. The output
+ * is always compact as the indent set through setIndent() is not visible to subclasses, thus pretty printing is
+ * ignored.
+ */
+public class Utf8JsonWriter extends JsonWriter {
+
+  public static final int DEFAULT_BUFFER_SIZE = 8192;
+  private static final int MINIMUM_BUFFER_SIZE = 32;
+
+  private static final Writer UNUSED = new Writer() {
+    @Override
+    public void close() {}
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void write(final char[] buffer, final int offset, final int length) {
+      throw new UnsupportedOperationException("Utf8JsonWriter does not write characters");
+    }
+  };
+
+  private static final int EMPTY_ARRAY = 1;
+  private static final int NONEMPTY_ARRAY = 2;
+  private static final int EMPTY_OBJECT = 3;
+  private static final int DANGLING_NAME = 4;
+  private static final int NONEMPTY_OBJECT = 5;
+  private static final int EMPTY_DOCUMENT = 6;
+  private static final int NONEMPTY_DOCUMENT = 7;
+
+  private static final byte[][] REPLACEMENTS = new byte[128][];
+  private static final byte[][] HTML_SAFE_REPLACEMENTS;
+
+  static {
+    for (int i = 0; i < 0x20; i++) {
+      Utf8JsonWriter.REPLACEMENTS[i] = Utf8JsonWriter.ascii(String.format("\\u%04x", i));
+    }
+    Utf8JsonWriter.REPLACEMENTS['"'] = Utf8JsonWriter.ascii("\\\"");
+    Utf8JsonWriter.REPLACEMENTS['\\'] = Utf8JsonWriter.ascii("\\\\");
+    Utf8JsonWriter.REPLACEMENTS['\t'] = Utf8JsonWriter.ascii("\\t");
+    Utf8JsonWriter.REPLACEMENTS['\b'] = Utf8JsonWriter.ascii("\\b");
+    Utf8JsonWriter.REPLACEMENTS['\n'] = Utf8JsonWriter.ascii("\\n");
+    Utf8JsonWriter.REPLACEMENTS['\r'] = Utf8JsonWriter.ascii("\\r");
+    Utf8JsonWriter.REPLACEMENTS['\f'] = Utf8JsonWriter.ascii("\\f");
+
+    HTML_SAFE_REPLACEMENTS = Utf8JsonWriter.REPLACEMENTS.clone();
+    Utf8JsonWriter.HTML_SAFE_REPLACEMENTS['<'] = Utf8JsonWriter.ascii("\\u003c");
+    Utf8JsonWriter.HTML_SAFE_REPLACEMENTS['>'] = Utf8JsonWriter.ascii("\\u003e");
+    Utf8JsonWriter.HTML_SAFE_REPLACEMENTS['&'] = Utf8JsonWriter.ascii("\\u0026");
+    Utf8JsonWriter.HTML_SAFE_REPLACEMENTS['='] = Utf8JsonWriter.ascii("\\u003d");
+    Utf8JsonWriter.HTML_SAFE_REPLACEMENTS['\''] = Utf8JsonWriter.ascii("\\u0027");
+  }
+
+  private static final byte[] LINE_SEPARATOR = Utf8JsonWriter.ascii("\\u2028");
+  private static final byte[] PARAGRAPH_SEPARATOR = Utf8JsonWriter.ascii("\\u2029");
+  private static final byte[] NULL = Utf8JsonWriter.ascii("null");
+  private static final byte[] TRUE = Utf8JsonWriter.ascii("true");
+  private static final byte[] FALSE = Utf8JsonWriter.ascii("false");
+
+  private static byte[] ascii(final String value) {
+    final byte[] bytes = new byte[value.length()];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) value.charAt(i);
+    }
+    return bytes;
+  }
+
+  private final byte[] buffer;
+  private int count;
+  private String deferredName;
+  private final OutputStream out;
+  private int[] stack = new int[32];
+  private int stackSize;
+
+  public Utf8JsonWriter(final OutputStream out) {
+    this(out, Utf8JsonWriter.DEFAULT_BUFFER_SIZE);
+  }
+
+  public Utf8JsonWriter(final OutputStream out, final int bufferSize) {
+    super(Utf8JsonWriter.UNUSED);
+    if (out == null) {
+      throw new NullPointerException("out == null");
+    }
+    if (bufferSize < Utf8JsonWriter.MINIMUM_BUFFER_SIZE) {
+      throw new IllegalArgumentException("The buffer size must be at least " + Utf8JsonWriter.MINIMUM_BUFFER_SIZE);
+    }
+
+    this.out = out;
+    this.buffer = new byte[bufferSize];
+    push(Utf8JsonWriter.EMPTY_DOCUMENT);
+  }
+
+  private void beforeName() throws IOException {
+    final int context = peek();
+    if (context == Utf8JsonWriter.NONEMPTY_OBJECT) {
+      write(',');
+    } else if (context != Utf8JsonWriter.EMPTY_OBJECT) {
+      throw new IllegalStateException("Nesting problem.");
+    }
+    stack[stackSize - 1] = Utf8JsonWriter.DANGLING_NAME;
+  }
+
+  private void beforeValue() throws IOException {
+    switch (peek()) {
+    case NONEMPTY_DOCUMENT:
+      if (!isLenient()) {
+        throw new IllegalStateException("JSON must have only one top-level value.");
+      }
+      break;
+    case EMPTY_DOCUMENT:
+      stack[stackSize - 1] = Utf8JsonWriter.NONEMPTY_DOCUMENT;
+      break;
+    case EMPTY_ARRAY:
+      stack[stackSize - 1] = Utf8JsonWriter.NONEMPTY_ARRAY;
+      break;
+    case NONEMPTY_ARRAY:
+      write(',');
+      break;
+    case DANGLING_NAME:
+      write(':');
+      stack[stackSize - 1] = Utf8JsonWriter.NONEMPTY_OBJECT;
+      break;
+    default:
+      throw new IllegalStateException("Nesting problem.");
+    }
+  }
+
+  @Override
+  public JsonWriter beginArray() throws IOException {
+    return open(Utf8JsonWriter.EMPTY_ARRAY, '[');
+  }
+
+  @Override
+  public JsonWriter beginObject() throws IOException {
+    return open(Utf8JsonWriter.EMPTY_OBJECT, '{');
+  }
+
+  @Override
+  public void close() throws IOException {
+    flushBuffer();
+    out.close();
+
+    final int size = stackSize;
+    if (size > 1 || size == 1 && stack[0] != Utf8JsonWriter.NONEMPTY_DOCUMENT) {
+      throw new IOException("Incomplete document");
+    }
+    stackSize = 0;
+  }
+
+  private JsonWriter close(final int empty, final int nonempty, final char bracket) throws IOException {
+    final int context = peek();
+    if (context != nonempty && context != empty) {
+      throw new IllegalStateException("Nesting problem.");
+    }
+    if (deferredName != null) {
+      throw new IllegalStateException("Dangling name: " + deferredName);
+    }
+
+    stackSize--;
+    write(bracket);
+    return this;
+  }
+
+  @Override
+  public JsonWriter endArray() throws IOException {
+    return close(Utf8JsonWriter.EMPTY_ARRAY, Utf8JsonWriter.NONEMPTY_ARRAY, ']');
+  }
+
+  @Override
+  public JsonWriter endObject() throws IOException {
+    return close(Utf8JsonWriter.EMPTY_OBJECT, Utf8JsonWriter.NONEMPTY_OBJECT, '}');
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (stackSize == 0) {
+      throw new IllegalStateException("JsonWriter is closed.");
+    }
+    flushBuffer();
+    out.flush();
+  }
+
+  private void flushBuffer() throws IOException {
+    if (count > 0) {
+      out.write(buffer, 0, count);
+      count = 0;
+    }
+  }
+
+  @Override
+  public JsonWriter jsonValue(final String value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    writeDeferredName();
+    beforeValue();
+    writeUtf8(value, null);
+    return this;
+  }
+
+  @Override
+  public JsonWriter name(final String name) throws IOException {
+    if (name == null) {
+      throw new NullPointerException("name == null");
+    }
+    if (deferredName != null) {
+      throw new IllegalStateException();
+    }
+    if (stackSize == 0) {
+      throw new IllegalStateException("JsonWriter is closed.");
+    }
+    deferredName = name;
+    return this;
+  }
+
+  @Override
+  public JsonWriter nullValue() throws IOException {
+    if (deferredName != null) {
+      if (!getSerializeNulls()) {
+        deferredName = null;
+        return this;
+      }
+      writeDeferredName();
+    }
+    beforeValue();
+    write(Utf8JsonWriter.NULL);
+    return this;
+  }
+
+  private JsonWriter open(final int empty, final char bracket) throws IOException {
+    writeDeferredName();
+    beforeValue();
+    push(empty);
+    write(bracket);
+    return this;
+  }
+
+  private int peek() {
+    if (stackSize == 0) {
+      throw new IllegalStateException("JsonWriter is closed.");
+    }
+    return stack[stackSize - 1];
+  }
+
+  private void push(final int scope) {
+    if (stackSize == stack.length) {
+      stack = Arrays.copyOf(stack, stackSize * 2);
+    }
+    stack[stackSize++] = scope;
+  }
+
+  private void string(final String value) throws IOException {
+    write('"');
+    writeUtf8(value, isHtmlSafe() ? Utf8JsonWriter.HTML_SAFE_REPLACEMENTS : Utf8JsonWriter.REPLACEMENTS);
+    write('"');
+  }
+
+  @Override
+  public JsonWriter value(final boolean value) throws IOException {
+    writeDeferredName();
+    beforeValue();
+    write(value ? Utf8JsonWriter.TRUE : Utf8JsonWriter.FALSE);
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(final Boolean value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    return value(value.booleanValue());
+  }
+
+  @Override
+  public JsonWriter value(final double value) throws IOException {
+    if (!isLenient() && (Double.isNaN(value) || Double.isInfinite(value))) {
+      throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+    }
+    writeDeferredName();
+    beforeValue();
+    writeUtf8(Double.toString(value), null);
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(long value) throws IOException {
+    writeDeferredName();
+    beforeValue();
+
+    if (value == Long.MIN_VALUE) {
+      writeUtf8(Long.toString(value), null);
+      return this;
+    }
+
+    ensure(20);
+    if (value < 0) {
+      buffer[count++] = '-';
+      value = -value;
+    }
+    int length = 1;
+    for (long remaining = value; remaining >= 10; remaining /= 10) {
+      length++;
+    }
+    int position = count + length;
+    count = position;
+    do {
+      buffer[--position] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value != 0);
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(final Number value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+
+    writeDeferredName();
+    final String string = value.toString();
+    if (!isLenient() && (string.equals("-Infinity") || string.equals("Infinity") || string.equals("NaN"))) {
+      throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+    }
+    beforeValue();
+    writeUtf8(string, null);
+    return this;
+  }
+
+  @Override
+  public JsonWriter value(final String value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    writeDeferredName();
+    beforeValue();
+    string(value);
+    return this;
+  }
+
+  private void ensure(final int length) throws IOException {
+    if (buffer.length - count < length) {
+      flushBuffer();
+    }
+  }
+
+  private void write(final byte[] bytes) throws IOException {
+    ensure(bytes.length);
+    System.arraycopy(bytes, 0, buffer, count, bytes.length);
+    count += bytes.length;
+  }
+
+  private void write(final char c) throws IOException {
+    ensure(1);
+    buffer[count++] = (byte) c;
+  }
+
+  private void writeDeferredName() throws IOException {
+    if (deferredName != null) {
+      beforeName();
+      string(deferredName);
+      deferredName = null;
+    }
+  }
+
+  /* Escapes the characters with a replacement, if any, and encodes the rest as UTF-8 */
+  private void writeUtf8(final String value, final byte[][] replacements) throws IOException {
+    final byte[] buffer = this.buffer;
+    for (int i = 0, length = value.length(); i < length; i++) {
+      final char c = value.charAt(i);
+      if (c < 0x80) {
+        final byte[] replacement = replacements == null ? null : replacements[c];
+        if (replacement == null) {
+          if (count == buffer.length) {
+            flushBuffer();
+          }
+          buffer[count++] = (byte) c;
+        } else {
+          write(replacement);
+        }
+      } else if (c < 0x800) {
+        ensure(2);
+        buffer[count++] = (byte) (0xc0 | c >> 6);
+        buffer[count++] = (byte) (0x80 | c & 0x3f);
+      } else if (replacements != null && c == '\u2028') {
+        write(Utf8JsonWriter.LINE_SEPARATOR);
+      } else if (replacements != null && c == '\u2029') {
+        write(Utf8JsonWriter.PARAGRAPH_SEPARATOR);
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+        final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        ensure(4);
+        buffer[count++] = (byte) (0xf0 | codePoint >> 18);
+        buffer[count++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+        buffer[count++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+        buffer[count++] = (byte) (0x80 | codePoint & 0x3f);
+      } else if (Character.isSurrogate(c)) {
+        /* Unpaired surrogates cannot be encoded, an OutputStreamWriter would write '?' too */
+        write('?');
+      } else {
+        ensure(3);
+        buffer[count++] = (byte) (0xe0 | c >> 12);
+        buffer[count++] = (byte) (0x80 | c >> 6 & 0x3f);
+        buffer[count++] = (byte) (0x80 | c & 0x3f);
+      }
+    }
+  }
+}
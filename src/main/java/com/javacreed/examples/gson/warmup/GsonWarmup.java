@@ -0,0 +1,50 @@
+package com.javacreed.examples.gson.warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.IntFunction;
+
+import com.google.gson.Gson;
+import com.javacreed.examples.gson.stream.Utf8JsonReader;
+import com.javacreed.examples.gson.stream.Utf8JsonWriter;
+
+/*
+ * Serialises and deserialises synthetic objects through the adapters registered with a Gson instance, both through
+ * strings and through the UTF-8 reader and writer, so that all the classes these paths need are loaded. This is meant
+ * for the training run that creates an AppCDS archive, which only records the classes loaded and thus needs a few
+ * iterations. Warming up within a short-lived job is opt-in: it delays the first result more than it speeds up what
+ * follows, as measured by the StartupBenchmark.
+ */
+public class GsonWarmup {
+
+  public static final String ITERATIONS_PROPERTY = "gson.warmup.iterations";
+  public static final int DEFAULT_ITERATIONS = 100;
+
+  /* Keeps the results observable so that the JIT cannot discard the work */
+  private static volatile int sink;
+
+  public static int iterations() {
+    return Integer.getInteger(GsonWarmup.ITERATIONS_PROPERTY, GsonWarmup.DEFAULT_ITERATIONS);
+  }
+
+  public static <T> void warmUp(final Gson gson, final Class<T> type, final IntFunction<T> samples,
+      final int iterations) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    int hash = 0;
+    for (int i = 0; i < iterations; i++) {
+      final T sample = samples.apply(i);
+
+      final String json = gson.toJson(sample, type);
+      hash += gson.fromJson(json, type).hashCode();
+
+      bytes.reset();
+      try (Utf8JsonWriter out = new Utf8JsonWriter(bytes)) {
+        gson.toJson(sample, type, out);
+      }
+      final T parsed = gson.fromJson(new Utf8JsonReader(ByteBuffer.wrap(bytes.toByteArray())), type);
+      hash += parsed.hashCode();
+    }
+    GsonWarmup.sink = hash;
+  }
+}
@@ -0,0 +1,169 @@
+package com.javacreed.examples.gson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Assume;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/*
+ * Measures the bytes allocated by the current thread while books are read and written through a type adapter. The
+ * adapter is warmed up first and the smallest of several rounds is taken, so that JIT compilation and escape analysis
+ * are reflected in the figures. Each operation is averaged over the whole catalogue, which amortises the cost of
+ * creating the JsonReader and JsonWriter.
+ */
+public class AdapterMeter<T> {
+
+  private static class DiscardingWriter extends Writer {
+    @Override
+    public void close() {}
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void write(final char[] buffer, final int offset, final int length) {}
+
+    @Override
+    public void write(final int c) {}
+
+    @Override
+    public void write(final String string, final int offset, final int length) {}
+  }
+
+  private static final int ROUNDS = 5;
+  private static final int WARMUP_ROUNDS = 20;
+
+  private static long allocatedBytes() {
+    final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  public static void assumeSupported() {
+    final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue("Thread allocation measurement is not supported by this JVM",
+        bean instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+    ((com.sun.management.ThreadMXBean) bean).setThreadAllocatedMemoryEnabled(true);
+  }
+
+  public static long budget(final String key) throws IOException {
+    final Properties budgets = new Properties();
+    try (InputStream in = AdapterMeter.class.getResourceAsStream("/allocation-budgets.properties")) {
+      budgets.load(in);
+    }
+
+    /* Prefer the budget for this Java version, such as part1.read.java8 */
+    final String version = System.getProperty("java.specification.version");
+    final String major = version.startsWith("1.") ? version.substring(2) : version;
+    final String budget = budgets.getProperty(key + ".java" + major, budgets.getProperty(key));
+    Assert.assertNotNull("No allocation budget for " + key, budget);
+    return Long.parseLong(budget);
+  }
+
+  private final TypeAdapter<T> adapter;
+  private final List<T> books;
+  private final String json;
+
+  public AdapterMeter(final TypeAdapter<T> adapter, final List<T> books) throws IOException {
+    this.adapter = adapter;
+    this.books = books;
+
+    final StringWriter writer = new StringWriter();
+    writeAll(new JsonWriter(writer));
+    this.json = writer.toString();
+  }
+
+  public void assertReadWithinBudget(final String key) throws IOException {
+    final long budget = AdapterMeter.budget(key);
+    final long bytes = bytesPerRead();
+    Assert.assertTrue(String.format("%s allocated %d bytes per book, over its budget of %d", key, bytes, budget),
+        bytes <= budget);
+  }
+
+  public void assertWriteWithinBudget(final String key) throws IOException {
+    final long budget = AdapterMeter.budget(key);
+    final long bytes = bytesPerWrite();
+    Assert.assertTrue(String.format("%s allocated %d bytes per book, over its budget of %d", key, bytes, budget),
+        bytes <= budget);
+  }
+
+  public double booksPerSecond() throws IOException {
+    for (int i = 0; i < AdapterMeter.WARMUP_ROUNDS / 4; i++) {
+      readAll();
+    }
+
+    final long start = System.nanoTime();
+    final List<T> parsed = readAll();
+    writeAll(new JsonWriter(new DiscardingWriter()));
+    final long elapsed = System.nanoTime() - start;
+
+    Assert.assertEquals(books.size(), parsed.size());
+    return books.size() * 2 * 1_000_000_000D / elapsed;
+  }
+
+  public long bytesPerRead() throws IOException {
+    for (int i = 0; i < AdapterMeter.WARMUP_ROUNDS; i++) {
+      readAll();
+    }
+
+    long smallest = Long.MAX_VALUE;
+    for (int i = 0; i < AdapterMeter.ROUNDS; i++) {
+      final long before = AdapterMeter.allocatedBytes();
+      readAll();
+      smallest = Math.min(smallest, AdapterMeter.allocatedBytes() - before);
+    }
+    return smallest / books.size();
+  }
+
+  public long bytesPerWrite() throws IOException {
+    final JsonWriter out = new JsonWriter(new DiscardingWriter());
+    out.beginArray();
+    for (int i = 0; i < AdapterMeter.WARMUP_ROUNDS; i++) {
+      for (final T book : books) {
+        adapter.write(out, book);
+      }
+    }
+
+    long smallest = Long.MAX_VALUE;
+    for (int i = 0; i < AdapterMeter.ROUNDS; i++) {
+      final long before = AdapterMeter.allocatedBytes();
+      for (final T book : books) {
+        adapter.write(out, book);
+      }
+      smallest = Math.min(smallest, AdapterMeter.allocatedBytes() - before);
+    }
+    return smallest / books.size();
+  }
+
+  private List<T> readAll() throws IOException {
+    final List<T> parsed = new ArrayList<>(books.size());
+    final JsonReader in = new JsonReader(new StringReader(json));
+    in.beginArray();
+    while (in.hasNext()) {
+      parsed.add(adapter.read(in));
+    }
+    in.endArray();
+    return parsed;
+  }
+
+  private void writeAll(final JsonWriter out) throws IOException {
+    out.beginArray();
+    for (final T book : books) {
+      adapter.write(out, book);
+    }
+    out.endArray();
+    out.flush();
+  }
+}
@@ -0,0 +1,84 @@
+package com.javacreed.examples.gson.aggregate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpillingCounterTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private void assertCounts(final long memoryBudget, final boolean spilled, final boolean mergedInPasses)
+      throws IOException {
+    final Random random = new Random(42);
+    final Map<Integer, Long> expected = new TreeMap<>();
+    try (SpillingCounter counter = new SpillingCounter(memoryBudget, folder.getRoot().toPath())) {
+      for (int i = 0; i < 100_000; i++) {
+        final int key = random.nextInt(5000) - 2500;
+        counter.increment(key);
+        expected.merge(key, 1L, Long::sum);
+      }
+      Assert.assertEquals(spilled, counter.getRuns() > 0);
+      Assert.assertEquals(mergedInPasses, counter.getRuns() > counter.getFanIn());
+
+      final List<Map.Entry<Integer, Long>> actual = new ArrayList<>();
+      counter.forEach((key, count) -> actual.add(new AbstractMap.SimpleEntry<>(key, count)));
+      Assert.assertEquals(new ArrayList<>(expected.entrySet()), actual);
+      Assert.assertTrue(counter.getRuns() <= counter.getFanIn());
+    }
+    Assert.assertArrayEquals(new String[0], folder.getRoot().list());
+  }
+
+  @Test
+  public void testInMemory() throws IOException {
+    assertCounts(64 * 1024 * 1024, false, false);
+  }
+
+  @Test
+  public void testMergedInPasses() throws IOException {
+    /* Room for 64 keys and a fan-in of 4, so that the runs are merged over several passes */
+    final SpillingCounter counter = new SpillingCounter(1024 * 4);
+    Assert.assertEquals(4, counter.getFanIn());
+    counter.close();
+
+    assertCounts(1024 * 4, true, true);
+  }
+
+  @Test
+  public void testSpilled() throws IOException {
+    /* Room for 2048 keys and a fan-in of 64, so 5000 distinct keys spill runs that are merged in a single pass */
+    assertCounts(128 * 1024, true, false);
+  }
+
+  @Test
+  public void testTruncatedRun() throws IOException {
+    try (SpillingCounter counter = new SpillingCounter(1024 * 18, folder.getRoot().toPath())) {
+      for (int i = 0; i < 10_000; i++) {
+        counter.increment(i % 2000);
+      }
+
+      final Path run = folder.getRoot().listFiles()[0].toPath();
+      Files.write(run, Arrays.copyOf(Files.readAllBytes(run), (int) Files.size(run) - 4));
+      try {
+        counter.forEach((key, count) -> {});
+        Assert.fail("The truncated run should have been detected");
+      } catch (final IOException e) {
+        Assert.assertEquals("Truncated spill file", e.getMessage());
+      }
+    }
+    Assert.assertArrayEquals(new String[0], folder.getRoot().list());
+  }
+}
@@ -0,0 +1,50 @@
+package com.javacreed.examples.gson.part2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.javacreed.examples.gson.AdapterMeter;
+
+public class BookTypeAdapterAllocationTest {
+
+  private static List<Book> createCatalog(final int size) {
+    final List<Book> books = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      final Book book = new Book();
+      book.setAuthors(new String[] { "Joshua Bloch " + i, "Neal Gafter" });
+      book.setTitle("Java Puzzlers: Traps, Pitfalls, and Corner Cases " + i);
+      book.setIsbn("978-" + (1000000000 + i));
+      books.add(book);
+    }
+    return books;
+  }
+
+  @BeforeClass
+  public static void setUp() {
+    AdapterMeter.assumeSupported();
+  }
+
+  @Test
+  public void testReadAllocation() throws IOException {
+    new AdapterMeter<>(new BookTypeAdapter(), BookTypeAdapterAllocationTest.createCatalog(1000))
+        .assertReadWithinBudget("part2.read");
+  }
+
+  @Test
+  public void testThroughput() throws IOException {
+    final double booksPerSecond = new AdapterMeter<>(new BookTypeAdapter(),
+        BookTypeAdapterAllocationTest.createCatalog(200_000)).booksPerSecond();
+    Assert.assertTrue(String.format("Only %.0f books per second", booksPerSecond), booksPerSecond > 10_000);
+  }
+
+  @Test
+  public void testWriteAllocation() throws IOException {
+    new AdapterMeter<>(new BookTypeAdapter(), BookTypeAdapterAllocationTest.createCatalog(1000))
+        .assertWriteWithinBudget("part2.write");
+  }
+}
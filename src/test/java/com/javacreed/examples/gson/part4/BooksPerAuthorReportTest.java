@@ -0,0 +1,46 @@
+package com.javacreed.examples.gson.part4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.javacreed.examples.gson.aggregate.SpillingCounter;
+import com.javacreed.examples.gson.stream.Utf8JsonReader;
+
+public class BooksPerAuthorReportTest {
+
+  @Test
+  public void test() throws IOException {
+    final GsonBuilder gsonBuilder = new GsonBuilder();
+    gsonBuilder.registerTypeAdapter(Book.class, new BookTypeAdapter());
+    final Gson gson = gsonBuilder.create();
+
+    final Book[] books = new Book[1000];
+    for (int i = 0; i < books.length; i++) {
+      books[i] = new Book();
+      books[i].setAuthors(new Author[] { new Author(1, "Joshua Bloch"), new Author(2 + i % 100, "Author " + i) });
+      books[i].setTitle("Title " + i);
+      books[i].setIsbn("978-" + i);
+    }
+    final byte[] json = gson.toJson(books).getBytes(StandardCharsets.UTF_8);
+
+    final List<String> report = new ArrayList<>();
+    try (SpillingCounter counter = new SpillingCounter(1024)) {
+      Assert.assertEquals(1000, BooksPerAuthorReport.count(new Utf8JsonReader(ByteBuffer.wrap(json)), counter));
+      Assert.assertTrue(counter.getRuns() > 0);
+      counter.forEach((id, count) -> report.add(id + "=" + count));
+    }
+
+    Assert.assertEquals(101, report.size());
+    Assert.assertEquals("1=1000", report.get(0));
+    Assert.assertEquals("2=10", report.get(1));
+    Assert.assertEquals("101=10", report.get(100));
+  }
+}
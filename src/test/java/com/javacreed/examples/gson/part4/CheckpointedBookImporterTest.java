@@ -0,0 +1,184 @@
+package com.javacreed.examples.gson.part4;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.MalformedJsonException;
+
+public class CheckpointedBookImporterTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path createDump(final int size) throws IOException {
+    final GsonBuilder gsonBuilder = new GsonBuilder();
+    gsonBuilder.registerTypeAdapter(Book.class, new BookTypeAdapter());
+    gsonBuilder.setPrettyPrinting();
+    final Gson gson = gsonBuilder.create();
+
+    final Book[] books = new Book[size];
+    for (int i = 0; i < size; i++) {
+      books[i] = new Book();
+      books[i].setAuthors(new Author[] { new Author(i, "Author \"" + i + "\" [\\]"), new Author(i + 1, "Neal Gafter") });
+      books[i].setTitle("Title {" + i + "}");
+      books[i].setIsbn("978-" + i);
+    }
+
+    final Path dump = folder.newFile("books.json").toPath();
+    try (Writer writer = Files.newBufferedWriter(dump, StandardCharsets.UTF_8)) {
+      gson.toJson(books, writer);
+    }
+    return dump;
+  }
+
+  @Test
+  public void testEmptyArray() throws IOException {
+    final Path dump = folder.newFile("empty.json").toPath();
+    Files.write(dump, " [ ] ".getBytes(StandardCharsets.UTF_8));
+
+    final Path checkpoint = folder.getRoot().toPath().resolve("import.checkpoint");
+    final ImportCheckpoint result = new CheckpointedBookImporter(checkpoint, 10).importBooks(dump, book -> Assert.fail());
+    Assert.assertEquals(0, result.getRecords());
+  }
+
+  @Test
+  public void testTrailingContent() throws IOException {
+    final Path checkpoint = folder.getRoot().toPath().resolve("import.checkpoint");
+    for (final String json : new String[] { "[{\"isbn\":\"1\"}][{\"isbn\":\"2\"}]", "[{\"isbn\":\"1\"}] garbage",
+        "[] [{\"isbn\":\"2\"}]" }) {
+      final Path dump = folder.newFile().toPath();
+      Files.write(dump, json.getBytes(StandardCharsets.UTF_8));
+
+      try {
+        new CheckpointedBookImporter(checkpoint, 10).importBooks(dump, book -> {});
+        Assert.fail("The content after the array should have been rejected in " + json);
+      } catch (final MalformedJsonException e) {
+        Assert.assertTrue(e.getMessage().startsWith("Unexpected content after the top-level array"));
+      }
+    }
+  }
+
+  @Test
+  public void testImport() throws IOException {
+    final Path dump = createDump(25);
+    final Path checkpoint = folder.getRoot().toPath().resolve("import.checkpoint");
+
+    final List<Book> books = new ArrayList<>();
+    final ImportCheckpoint result = new CheckpointedBookImporter(checkpoint, 10).importBooks(dump, books::add);
+    Assert.assertEquals(25, result.getRecords());
+    Assert.assertEquals(25, books.size());
+    Assert.assertEquals("Title {24}", books.get(24).getTitle());
+    Assert.assertEquals("Author \"3\" [\\]", books.get(3).getAuthors()[0].getName());
+    Assert.assertFalse(Files.exists(checkpoint));
+  }
+
+  private void interruptImport(final Path dump, final Path checkpoint) throws IOException {
+    final int[] count = { 0 };
+    try {
+      new CheckpointedBookImporter(checkpoint, 10).importBooks(dump, book -> {
+        if (++count[0] == 17) {
+          throw new IllegalStateException("Simulated crash");
+        }
+      });
+      Assert.fail("The import should have failed");
+    } catch (final IllegalStateException e) {
+      Assert.assertTrue(Files.exists(checkpoint));
+    }
+  }
+
+  @Test
+  public void testChecksumMismatch() throws IOException {
+    final Path dump = createDump(25);
+    final Path checkpoint = folder.getRoot().toPath().resolve("import.checkpoint");
+    interruptImport(dump, checkpoint);
+
+    final ImportCheckpoint saved = ImportCheckpoint.load(checkpoint);
+    new ImportCheckpoint(saved.getOffset(), saved.getRecords(), saved.getRecordLength(), saved.getRecordChecksum() + 1,
+        saved.getSourceSize(), saved.getSourceModified()).save(checkpoint);
+
+    try {
+      new CheckpointedBookImporter(checkpoint, 10).importBooks(dump, book -> {});
+      Assert.fail("The checkpoint should have been rejected");
+    } catch (final IOException e) {
+      Assert.assertTrue(e.getMessage().contains("does not match"));
+    }
+  }
+
+  @Test
+  public void testModifiedRecord() throws IOException {
+    final Path dump = createDump(25);
+    final Path checkpoint = folder.getRoot().toPath().resolve("import.checkpoint");
+    interruptImport(dump, checkpoint);
+
+    /* Same size and modification time, but the record before the checkpoint differs */
+    final ImportCheckpoint saved = ImportCheckpoint.load(checkpoint);
+    final FileTime modified = Files.getLastModifiedTime(dump);
+    final byte[] bytes = Files.readAllBytes(dump);
+    bytes[(int) (saved.getOffset() - saved.getRecordLength() + 1)] = ' ';
+    Files.write(dump, bytes);
+    Files.setLastModifiedTime(dump, modified);
+
+    try {
+      new CheckpointedBookImporter(checkpoint, 10).importBooks(dump, book -> {});
+      Assert.fail("The checkpoint should have been rejected");
+    } catch (final IOException e) {
+      Assert.assertTrue(e.getMessage().contains("does not match"));
+    }
+  }
+
+  @Test
+  public void testReplacedSource() throws IOException {
+    final Path dump = createDump(25);
+    final Path checkpoint = folder.getRoot().toPath().resolve("import.checkpoint");
+    interruptImport(dump, checkpoint);
+
+    Files.write(dump, "[]".getBytes(StandardCharsets.UTF_8));
+    try {
+      new CheckpointedBookImporter(checkpoint, 10).importBooks(dump, book -> {});
+      Assert.fail("The checkpoint should have been rejected");
+    } catch (final IOException e) {
+      Assert.assertTrue(e.getMessage().contains("The checkpoint was taken for a source of"));
+    }
+  }
+
+  @Test
+  public void testResumeAfterFailure() throws IOException {
+    final Path dump = createDump(25);
+    final Path checkpoint = folder.getRoot().toPath().resolve("import.checkpoint");
+    final ImportCheckpoint expected = new CheckpointedBookImporter(checkpoint, 10).importBooks(dump, book -> {});
+
+    final List<String> isbns = new ArrayList<>();
+    try {
+      new CheckpointedBookImporter(checkpoint, 10).importBooks(dump, book -> {
+        if (isbns.size() == 17) {
+          throw new IllegalStateException("Simulated crash");
+        }
+        isbns.add(book.getIsbn());
+      });
+      Assert.fail("The import should have failed");
+    } catch (final IllegalStateException e) {
+      Assert.assertEquals(10, ImportCheckpoint.load(checkpoint).getRecords());
+    }
+
+    final List<String> resumed = new ArrayList<>();
+    final ImportCheckpoint result = new CheckpointedBookImporter(checkpoint, 10).importBooks(dump,
+        book -> resumed.add(book.getIsbn()));
+    Assert.assertEquals(expected, result);
+    Assert.assertEquals(15, resumed.size());
+    Assert.assertEquals("978-10", resumed.get(0));
+    Assert.assertFalse(Files.exists(checkpoint));
+  }
+}
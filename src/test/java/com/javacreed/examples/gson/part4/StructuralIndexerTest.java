@@ -0,0 +1,110 @@
+package com.javacreed.examples.gson.part4;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.MalformedJsonException;
+
+public class StructuralIndexerTest {
+
+  private static ByteBuffer utf8(final String json) {
+    return ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testEmptyArray() throws IOException {
+    Assert.assertEquals(0, StructuralIndexer.index(StructuralIndexerTest.utf8(" [ ] ")).size());
+  }
+
+  @Test(expected = MalformedJsonException.class)
+  public void testMissingComma() throws IOException {
+    StructuralIndexer.index(StructuralIndexerTest.utf8("[{} {}]"));
+  }
+
+  @Test(expected = MalformedJsonException.class)
+  public void testScalarElement() throws IOException {
+    StructuralIndexer.index(StructuralIndexerTest.utf8("[{\"isbn\":\"1\"},null,{\"isbn\":\"2\"}]"));
+  }
+
+  @Test(expected = MalformedJsonException.class)
+  public void testScalarOnlyElement() throws IOException {
+    StructuralIndexer.index(StructuralIndexerTest.utf8("[null]"));
+  }
+
+  @Test(expected = MalformedJsonException.class)
+  public void testStringElement() throws IOException {
+    StructuralIndexer.index(StructuralIndexerTest.utf8("[{},\"{}\"]"));
+  }
+
+  @Test(expected = MalformedJsonException.class)
+  public void testTrailingArray() throws IOException {
+    StructuralIndexer.index(StructuralIndexerTest.utf8("[{}][{}]"));
+  }
+
+  @Test(expected = MalformedJsonException.class)
+  public void testTrailingComma() throws IOException {
+    StructuralIndexer.index(StructuralIndexerTest.utf8("[{},]"));
+  }
+
+  @Test(expected = MalformedJsonException.class)
+  public void testTrailingContent() throws IOException {
+    StructuralIndexer.index(StructuralIndexerTest.utf8("[{}] x"));
+  }
+
+  @Test(expected = MalformedJsonException.class)
+  public void testObjectAtTopLevel() throws IOException {
+    StructuralIndexer.index(StructuralIndexerTest.utf8("{\"isbn\":\"978-0321356680\"}"));
+  }
+
+  @Test
+  public void testOffsets() throws IOException {
+    final String json = " [{\"title\":\"a \\\"}\\\\\",\"b\":[\"]\"]},  {\"x\":[1,{}]} ,[\"]\",\"{\"]]\n";
+    final StructuralIndex index = StructuralIndexer.index(StructuralIndexerTest.utf8(json));
+
+    Assert.assertEquals(3, index.size());
+    Assert.assertEquals("{\"title\":\"a \\\"}\\\\\",\"b\":[\"]\"]}", json.substring(index.start(0), index.end(0)));
+    Assert.assertEquals("{\"x\":[1,{}]}", json.substring(index.start(1), index.end(1)));
+    Assert.assertEquals("[\"]\",\"{\"]", json.substring(index.start(2), index.end(2)));
+  }
+
+  @Test
+  public void testReadAll() throws IOException {
+    final GsonBuilder gsonBuilder = new GsonBuilder();
+    gsonBuilder.registerTypeAdapter(Book.class, new BookTypeAdapter());
+    final Gson gson = gsonBuilder.create();
+
+    final Book[] books = new Book[1000];
+    for (int i = 0; i < books.length; i++) {
+      books[i] = new Book();
+      books[i].setAuthors(new Author[] { new Author(i, "José \"" + i + "\" \\") });
+      books[i].setTitle("Title {" + i + "] ☃");
+      books[i].setIsbn("978-" + i);
+    }
+
+    /* Prefix the buffer to check that offsets are relative to the buffer and not its position */
+    final byte[] json = gson.toJson(books).getBytes(StandardCharsets.UTF_8);
+    final ByteBuffer buffer = ByteBuffer.allocate(json.length + 3);
+    buffer.put("   ".getBytes(StandardCharsets.UTF_8)).put(json);
+    ((Buffer) buffer).position(3);
+
+    final Book[] parsed = new ParallelBookReader().readAll(buffer);
+    Assert.assertEquals(books.length, parsed.length);
+    for (int i = 0; i < books.length; i++) {
+      Assert.assertEquals(books[i].getIsbn(), parsed[i].getIsbn());
+      Assert.assertEquals(books[i].getTitle(), parsed[i].getTitle());
+      Assert.assertArrayEquals(books[i].getAuthors(), parsed[i].getAuthors());
+    }
+  }
+
+  @Test(expected = MalformedJsonException.class)
+  public void testUnterminatedString() throws IOException {
+    StructuralIndexer.index(StructuralIndexerTest.utf8("[{\"title\":\"a}]"));
+  }
+}
@@ -0,0 +1,190 @@
+package com.javacreed.examples.gson.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import com.javacreed.examples.gson.part4.Author;
+import com.javacreed.examples.gson.part4.Book;
+import com.javacreed.examples.gson.part4.BookTypeAdapter;
+
+public class Utf8JsonReaderTest {
+
+  private static class Shelf {
+    private Map<String, Book> books;
+    private Map<Integer, String> labels;
+  }
+
+  private static final String JSON = "{\"isbn\":\"978-0321356680\",\"title\":\"Caf\\u00e9 \\\"Java\\\" \\\\ ☃ 😀 É\","
+      + " \"authors\" : [ {\"id\":1,\"name\":\"Joshua Bloch\"}, {\"id\":-2,\"name\":\"Neal\\nGafter\"} ],"
+      + "\"price\":39.99,\"pages\":1e3,\"big\":9223372036854775807,\"flags\":[true,false,null],\"empty\":{}}";
+
+  private static void assertDocument(final Utf8JsonReader in) throws IOException {
+    in.beginObject();
+    Assert.assertEquals("isbn", in.nextName());
+    Assert.assertEquals("978-0321356680", in.nextString());
+    Assert.assertEquals("title", in.nextName());
+    Assert.assertEquals("Café \"Java\" \\ ☃ 😀 É", in.nextString());
+    Assert.assertEquals("authors", in.nextName());
+    in.beginArray();
+    in.beginObject();
+    Assert.assertEquals("id", in.nextName());
+    Assert.assertEquals(1, in.nextInt());
+    Assert.assertEquals("name", in.nextName());
+    Assert.assertEquals("Joshua Bloch", in.nextString());
+    in.endObject();
+    Assert.assertEquals("$.authors[1]", in.getPath());
+    in.skipValue();
+    Assert.assertFalse(in.hasNext());
+    in.endArray();
+    Assert.assertEquals("price", in.nextName());
+    Assert.assertEquals(39.99, in.nextDouble(), 0);
+    Assert.assertEquals("pages", in.nextName());
+    Assert.assertEquals(1000, in.nextInt());
+    Assert.assertEquals("big", in.nextName());
+    Assert.assertEquals(Long.MAX_VALUE, in.nextLong());
+    Assert.assertEquals("flags", in.nextName());
+    in.beginArray();
+    Assert.assertTrue(in.nextBoolean());
+    Assert.assertFalse(in.nextBoolean());
+    Assert.assertEquals(JsonToken.NULL, in.peek());
+    in.nextNull();
+    in.endArray();
+    Assert.assertEquals("empty", in.nextName());
+    in.beginObject();
+    in.endObject();
+    in.endObject();
+    Assert.assertEquals(JsonToken.END_DOCUMENT, in.peek());
+  }
+
+  private static byte[] utf8(final String json) {
+    return json.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testBook() throws IOException {
+    final GsonBuilder gsonBuilder = new GsonBuilder();
+    gsonBuilder.registerTypeAdapter(Book.class, new BookTypeAdapter());
+    final Gson gson = gsonBuilder.create();
+
+    final Book book = new Book();
+    book.setAuthors(new Author[] { new Author(1, "Joshua Bloch"), new Author(2, "Neal Gafter") });
+    book.setTitle("Java Puzzlers: Traps, Pitfalls, and Corner Cases");
+    book.setIsbn("978-0321336781");
+
+    final byte[] json = Utf8JsonReaderTest.utf8(gson.toJson(book));
+    final Book parsedBook = gson.fromJson(new Utf8JsonReader(new ByteArrayInputStream(json)), Book.class);
+    Assert.assertEquals(book.getIsbn(), parsedBook.getIsbn());
+    Assert.assertEquals(book.getTitle(), parsedBook.getTitle());
+    Assert.assertArrayEquals(book.getAuthors(), parsedBook.getAuthors());
+  }
+
+  @Test
+  public void testDirectByteBuffer() throws IOException {
+    final byte[] json = Utf8JsonReaderTest.utf8(Utf8JsonReaderTest.JSON);
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(json.length);
+    ((Buffer) buffer.put(json)).flip();
+    Utf8JsonReaderTest.assertDocument(new Utf8JsonReader(buffer, 16));
+  }
+
+  @Test
+  public void testHeapByteBuffer() throws IOException {
+    final byte[] json = Utf8JsonReaderTest.utf8("  " + Utf8JsonReaderTest.JSON + "garbage");
+    Utf8JsonReaderTest.assertDocument(new Utf8JsonReader(ByteBuffer.wrap(json, 2, json.length - 9).slice()));
+  }
+
+  @Test
+  public void testInputStream() throws IOException {
+    final byte[] json = Utf8JsonReaderTest.utf8(Utf8JsonReaderTest.JSON);
+    Utf8JsonReaderTest.assertDocument(new Utf8JsonReader(new ByteArrayInputStream(json)));
+    Utf8JsonReaderTest.assertDocument(new Utf8JsonReader(new ByteArrayInputStream(json), 16));
+  }
+
+  @Test
+  public void testMap() throws IOException {
+    final Gson gson = new Gson();
+
+    /* Enough keys for the JsonReader to refill its buffer from the names it is kept on */
+    final Map<String, Integer> counts = new LinkedHashMap<>();
+    for (int i = 0; i < 1000; i++) {
+      counts.put("key \"" + i + "\"", i);
+    }
+
+    final byte[] json = Utf8JsonReaderTest.utf8(gson.toJson(counts));
+    final Map<String, Integer> parsedCounts = gson.fromJson(new Utf8JsonReader(new ByteArrayInputStream(json)),
+        new TypeToken<Map<String, Integer>>() {}.getType());
+    Assert.assertEquals(counts, parsedCounts);
+  }
+
+  /*
+   * A reader is created for every record when reading in parallel or from checkpoints, thus creating one must only feed
+   * the JsonReader the names it needs rather than filling its buffer
+   */
+  @Test
+  public void testReaderPerRecord() throws IOException {
+    final Utf8JsonReader.Names names = new Utf8JsonReader.Names();
+    final char[] chars = new char[1024];
+    Assert.assertEquals("{\"", new String(chars, 0, names.read(chars, 0, chars.length)));
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals("\":0,\"", new String(chars, 0, names.read(chars, 0, chars.length)));
+    }
+    Assert.assertEquals("\":", new String(chars, 0, names.read(chars, 0, 2)));
+    Assert.assertEquals("0,\"", new String(chars, 0, names.read(chars, 0, chars.length)));
+
+    final Gson gson = new Gson();
+    for (int i = 0; i < 1000; i++) {
+      final byte[] json = Utf8JsonReaderTest
+          .utf8("{\"labels\":{\"" + i + "\":\"first\",\"" + (-i - 1) + "\":\"second\"}}");
+      final Shelf shelf = gson.fromJson(new Utf8JsonReader(ByteBuffer.wrap(json)), Shelf.class);
+      Assert.assertEquals("first", shelf.labels.get(i));
+      Assert.assertEquals("second", shelf.labels.get(-i - 1));
+    }
+  }
+
+  @Test
+  public void testMapField() throws IOException {
+    final GsonBuilder gsonBuilder = new GsonBuilder();
+    gsonBuilder.registerTypeAdapter(Book.class, new BookTypeAdapter());
+    final Gson gson = gsonBuilder.create();
+
+    final byte[] json = Utf8JsonReaderTest.utf8("{\"books\":{\"puzzlers\":{\"isbn\":\"978-0321336781\","
+        + "\"title\":\"Java Puzzlers\",\"authors\":[{\"id\":1,\"name\":\"Joshua Bloch\"}]}},"
+        + "\"labels\":{\"1\":\"first\",\"-2\":\"second\"}}");
+    final Shelf shelf = gson.fromJson(new Utf8JsonReader(ByteBuffer.wrap(json)), Shelf.class);
+    Assert.assertEquals(1, shelf.books.size());
+    Assert.assertEquals("Java Puzzlers", shelf.books.get("puzzlers").getTitle());
+    Assert.assertArrayEquals(new Author[] { new Author(1, "Joshua Bloch") }, shelf.books.get("puzzlers").getAuthors());
+    Assert.assertEquals("first", shelf.labels.get(1));
+    Assert.assertEquals("second", shelf.labels.get(-2));
+  }
+
+  @Test(expected = MalformedJsonException.class)
+  public void testMalformedLiteral() throws IOException {
+    final Utf8JsonReader in = new Utf8JsonReader(ByteBuffer.wrap(Utf8JsonReaderTest.utf8("[truth]")));
+    in.beginArray();
+    in.nextBoolean();
+  }
+
+  @Test
+  public void testMalformedUtf8() throws IOException {
+    final Utf8JsonReader in = new Utf8JsonReader(ByteBuffer.wrap(new byte[] { '"', 'a', (byte) 0xc3, 'b', '"' }));
+    Assert.assertEquals("a�b", in.nextString());
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testIntOverflow() throws IOException {
+    new Utf8JsonReader(ByteBuffer.wrap(Utf8JsonReaderTest.utf8("2147483648"))).nextInt();
+  }
+}
@@ -0,0 +1,78 @@
+package com.javacreed.examples.gson.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import com.javacreed.examples.gson.part4.Author;
+import com.javacreed.examples.gson.part4.Book;
+import com.javacreed.examples.gson.part4.BookTypeAdapter;
+
+public class Utf8JsonWriterTest {
+
+  private static void writeDocument(final JsonWriter out) throws IOException {
+    out.beginObject();
+    out.name("title").value("Café \"Java\" \\ \n\t\u0001 <a href='x'>&</a>   ☃ 😀");
+    out.name("count").value(0);
+    out.name("min").value(Long.MIN_VALUE);
+    out.name("max").value(Long.MAX_VALUE);
+    out.name("negative").value(-1234567890L);
+    out.name("price").value(39.99);
+    out.name("number").value(Integer.valueOf(42));
+    out.name("flags").beginArray().value(true).value(Boolean.FALSE).nullValue().endArray();
+    out.name("skipped").nullValue();
+    out.name("raw").jsonValue("{\"a\":1}");
+    out.name("empty").beginObject().endObject();
+    out.endObject();
+    out.close();
+  }
+
+  @Test
+  public void testBook() throws IOException {
+    final GsonBuilder gsonBuilder = new GsonBuilder();
+    gsonBuilder.registerTypeAdapter(Book.class, new BookTypeAdapter());
+    final Gson gson = gsonBuilder.create();
+
+    final Book book = new Book();
+    book.setAuthors(new Author[] { new Author(1, "Joshua Bloch"), new Author(2, "Neal Gafter") });
+    book.setTitle("Java Puzzlers: Traps, Pitfalls, and Corner Cases");
+    book.setIsbn("978-0321336781");
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (Utf8JsonWriter out = new Utf8JsonWriter(bytes)) {
+      gson.toJson(book, Book.class, out);
+    }
+    Assert.assertEquals(gson.toJson(book), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testSameAsJsonWriter() throws IOException {
+    for (final boolean htmlSafe : new boolean[] { false, true }) {
+      final StringWriter expected = new StringWriter();
+      final JsonWriter reference = new JsonWriter(expected);
+      reference.setHtmlSafe(htmlSafe);
+      Utf8JsonWriterTest.writeDocument(reference);
+
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final Utf8JsonWriter out = new Utf8JsonWriter(bytes, 32);
+      out.setHtmlSafe(htmlSafe);
+      Utf8JsonWriterTest.writeDocument(out);
+
+      Assert.assertEquals(expected.toString(), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testTwoTopLevelValues() throws IOException {
+    final Utf8JsonWriter out = new Utf8JsonWriter(new ByteArrayOutputStream());
+    out.value(1);
+    out.value(2);
+  }
+}